@@ -7,36 +7,49 @@ class Dictionary {
 	public int m;
 	public ArrayList<Integer> basic = new ArrayList<>();
 	private int[] non_basic;
-	private ArrayList<Double> b = new ArrayList<>();
+	private double[] b = new double[0];    //capacity may exceed m, rows beyond m are unused
 	private ArrayList<double[]> A = new ArrayList<>();
 	public double[] z;
 	public boolean is_final;
 	public boolean is_unbounded;
-	public boolean is_dual;
 	public static double tol = 1e-6;
 	
 	public Dictionary(String file) throws IOException {
 		parse(file);
 	}
 	
-	public void set_dual_view() {
-		is_dual = true;
-		is_unbounded = false;
-		is_final = false;
+	//reads exactly one dictionary from the stream, leaving the rest of it untouched
+	public Dictionary(BufferedReader input) throws IOException {
+		parse(input);
+	}
+	
+	//deep copy, so that heuristics may pivot on it without touching the original
+	public Dictionary(Dictionary dict) {
+		n = dict.n;
+		m = dict.m;
+		basic = new ArrayList<>(dict.basic);
+		non_basic = dict.non_basic.clone();
+		b = dict.b.clone();
+		for(int i = 0; i < m; i++) {
+			A.add(dict.A.get(i).clone());
+		}
+		z = dict.z.clone();
+		is_final = dict.is_final;
+		is_unbounded = dict.is_unbounded;
 	}
 	
-	public void set_primal_view() {
-		is_dual = false;
+	//clears the outcome of the previous solve, so that the dictionary can be solved again
+	public void reset() {
 		is_unbounded = false;
 		is_final = false;
 	}
 	
 	public int non_basic(int id) {
-		return is_dual ? basic.get(id) : non_basic[id];
+		return non_basic[id];
 	}
 	
 	public int basic(int id) {
-		return is_dual ? non_basic[id] : basic.get(id);
+		return basic.get(id);
 	}
 	
 	public double A(int i, int j) {
@@ -44,58 +57,152 @@ class Dictionary {
 	}
 	
 	public double b(int i) {
-		return b.get(i);
+		return b[i];
 	}
-	
-	public int n() {
-		return is_dual ? m : n;
+
+	//appends rows a[k] with constant terms b[k], k < count, in one go
+	public void add_cutting_planes(double[][] a, double[] b, int count) {
+		if(this.b.length < m + count) {
+			this.b = java.util.Arrays.copyOf(this.b, 2*(m + count));
+		}
+		A.ensureCapacity(m + count);
+		basic.ensureCapacity(m + count);
+		for(int k = 0; k < count; k++) {
+			m++;
+			basic.add(n+m);
+			this.b[m-1] = b[k];
+			A.add(a[k]);
+		}
+		is_final = false;
+		is_unbounded = false;
 	}
 	
-	public int m() {
-		return is_dual ? n : m;
-	}
-
 	public void add_cutting_plane(double[] a, double b) {
 		m++;
 		basic.add(n+m);
-		this.b.add(b);
+		if(this.b.length < m) {
+			this.b = java.util.Arrays.copyOf(this.b, 2*m);
+		}
+		this.b[m-1] = b;
 		A.add(a);
 		is_final = false;
 		is_unbounded = false;
 	}	
 	
-	public double[] primal_solution() {
-		double[] solution = new double[n];
+	//replaces objective by c[0] + c[1]*x1 + ... + c[n]*xn expressed through the current non basic vars
+	public void set_objective(double[] c) {
+		z = new double[n+1];
+		z[0] = c[0];
+		for(int i = 0; i < n; i++) {
+			if(non_basic[i] <= n) {
+				z[i+1] = c[non_basic[i]];
+			}
+		}
 		for(int i = 0; i < m; i++) {
-			if(basic.get(i) <= n) {
-				solution[basic.get(i)-1] = b.get(i);
+			int id = basic.get(i);
+			if(id <= n) {
+				z[0] += c[id]*b[i];
+				for(int j = 1; j <= n; j++) {
+					z[j] += c[id]*A.get(i)[j-1];
+				}
 			}
 		}
-		return solution;
 	}
 	
-	public int get_entering() {
-		if(is_dual) {
-			return dual_entering();
+	//adds artificial var x0 (id 0) with coefficient 1 in every row and cost z0, as in the auxiliary problem of phase 1
+	public void add_artificial(double z0) {
+		for(int i = 0; i < m; i++) {
+			double[] row = java.util.Arrays.copyOf(A.get(i), n+1);
+			row[n] = 1.0;
+			A.set(i, row);
 		}
-		return primal_entering();
+		non_basic = java.util.Arrays.copyOf(non_basic, n+1);
+		non_basic[n] = 0;
+		z = java.util.Arrays.copyOf(z, n+2);
+		z[n+1] = z0;
+		n++;
 	}
 	
-	public int get_leaving(int enter_id) {
-		if(is_dual) {
-			return dual_leaving(enter_id);
+	//drops artificial var x0, pivoting it out of the basis first if it is basic at zero level
+	public void remove_artificial() {
+		int row = basic.indexOf(0);
+		if(row != -1) {
+			//the largest entry however small, x0 row can not be zero as long as the basis is nonsingular
+			int col = -1;
+			for(int j = 0; j < n; j++) {
+				if(A.get(row)[j] != 0 && (col == -1 || Math.abs(A.get(row)[j]) > Math.abs(A.get(row)[col]))) {
+					col = j;
+				}
+			}
+			if(col == -1) {
+				throw new ArithmeticException("Basis of phase 1 is numerically singular!");
+			}
+			primal_pivot(col, row);
 		}
-		return primal_leaving(enter_id);
+		int col = 0;
+		while(non_basic[col] != 0) {
+			col++;
+		}
+		for(int i = 0; i < m; i++) {
+			double[] row_i = new double[n-1];
+			System.arraycopy(A.get(i), 0, row_i, 0, col);
+			System.arraycopy(A.get(i), col+1, row_i, col, n-1-col);
+			A.set(i, row_i);
+		}
+		int[] non_basic_new = new int[n-1];
+		System.arraycopy(non_basic, 0, non_basic_new, 0, col);
+		System.arraycopy(non_basic, col+1, non_basic_new, col, n-1-col);
+		non_basic = non_basic_new;
+		double[] z_new = new double[n];
+		System.arraycopy(z, 0, z_new, 0, col+1);
+		System.arraycopy(z, col+2, z_new, col+1, n-1-col);
+		z = z_new;
+		n--;
 	}
 	
-	public void pivot(int enter_id, int leave_id) {
-		if(is_dual) {
-			dual_pivot(enter_id, leave_id);
-		} else {
-			primal_pivot(enter_id, leave_id);
+	//pivots the given vars into the basis, as far as the pivots are nonsingular
+	public void set_basis(int[] ids) {
+		boolean[] wanted = new boolean[n+m+1];
+		for(int id : ids) {
+			if(id > 0 && id < wanted.length) {
+				wanted[id] = true;
+			}
+		}
+		for(int j = 0; j < n; j++) {
+			if(!wanted[non_basic[j]]) {
+				continue;
+			}
+			int row = -1;
+			for(int i = 0; i < m; i++) {
+				if(!wanted[basic.get(i)] && Math.abs(A.get(i)[j]) > tol && (row == -1 || Math.abs(A.get(i)[j]) > Math.abs(A.get(row)[j]))) {
+					row = i;
+				}
+			}
+			if(row != -1) {
+				primal_pivot(j, row);
+			}
 		}
 	}
 	
+	public boolean is_dual_feasible() {
+		for(int i = 1; i <= n; i++) {
+			if(z[i] > tol) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public double[] primal_solution() {
+		double[] solution = new double[n];
+		for(int i = 0; i < m; i++) {
+			if(basic.get(i) >= 1 && basic.get(i) <= n) {
+				solution[basic.get(i)-1] = b[i];
+			}
+		}
+		return solution;
+	}
+	
 	public int primal_entering() {
 		int var_num = Integer.MAX_VALUE;
 		int id = -1;
@@ -117,7 +224,7 @@ class Dictionary {
 		double curr = Double.POSITIVE_INFINITY;
 		for(int i = 0; i < m; i++) {
 			if(/* A.get(i)[enter_id] < 0*/ (A.get(i)[enter_id] < -tol)) {
-				double ratio = -b.get(i)/A.get(i)[enter_id];
+				double ratio = -b[i]/A.get(i)[enter_id];
 				if(curr > ratio) {
 					curr = ratio;
 					var_num = basic.get(i);
@@ -140,40 +247,42 @@ class Dictionary {
 		non_basic[enter_id] = basic.get(leave_id);
 		basic.set(leave_id, temp);
 		//update leaving row in the dictionary
-		b.set(leave_id, -b.get(leave_id)/A.get(leave_id)[enter_id]);
-		for(int i = 0; i < n; i++) {
-			if(i != enter_id) {
-				A.get(leave_id)[i] /= -A.get(leave_id)[enter_id];
-			} 
+		double[] pivot_row = A.get(leave_id);
+		double pivot = pivot_row[enter_id];
+		b[leave_id] = -b[leave_id]/pivot;
+		for(int j = 0; j < n; j++) {
+			pivot_row[j] /= -pivot;
 		}
-		A.get(leave_id)[enter_id] = 1/A.get(leave_id)[enter_id];
-		//update other rows
+		pivot_row[enter_id] = 1/pivot;
+		//update other rows, row by row as they are stored
+		double b_leave = b[leave_id];
 		for(int i = 0; i < m; i++) {
-			if(i != leave_id) {
-				b.set(i, b.get(i) + b.get(leave_id)*A.get(i)[enter_id]);
-				for(int j = 0; j < n; j++) {
-					if(j != enter_id) {
-						A.get(i)[j] += A.get(i)[enter_id]*A.get(leave_id)[j];
-					}
-				}
-				A.get(i)[enter_id] = A.get(i)[enter_id]*A.get(leave_id)[enter_id];
+			double[] row = A.get(i);
+			double coef = row[enter_id];
+			if(i == leave_id || coef == 0) {
+				continue;
+			}
+			b[i] += b_leave*coef;
+			for(int j = 0; j < n; j++) {
+				row[j] += coef*pivot_row[j];
 			}
+			row[enter_id] = coef*pivot_row[enter_id];
 		}
 		//update objective coefficients
-		z[0] += z[enter_id+1]*b.get(leave_id);
-		for(int i = 1; i <= n; i++) {
-			if(i-1 != enter_id) {
-				z[i] += z[enter_id+1]*A.get(leave_id)[i-1];
-			}
+		double coef = z[enter_id+1];
+		z[0] += coef*b_leave;
+		for(int j = 0; j < n; j++) {
+			z[j+1] += coef*pivot_row[j];
 		}
-		z[enter_id+1] = z[enter_id+1]*A.get(leave_id)[enter_id];
+		z[enter_id+1] = coef*pivot_row[enter_id];
 	}	
 	
-	public int dual_entering() {
+	//dual simplex on the same (primal) dictionary: the leaving row is the infeasible one with the smallest basic var
+	public int dual_leaving_row() {
 		int var_num = Integer.MAX_VALUE;
 		int id = -1;
 		for(int i = 0; i < m; i++) {
-			if(/* b.get(i) < 0 */ b.get(i) < -tol && basic.get(i) < var_num) {
+			if(b[i] < -tol && basic.get(i) < var_num) {
 				var_num = basic.get(i);
 				id = i;
 			}
@@ -184,20 +293,22 @@ class Dictionary {
 		return id;
 	}
 	
-	public int dual_leaving(int enter_id) {
+	//dual ratio test over the leaving row only, is_unbounded means that the LP is infeasible
+	public int dual_entering_col(int leave_id) {
+		double[] row = A.get(leave_id);
 		int var_num = Integer.MAX_VALUE;
 		int id = -1;
 		double curr = Double.POSITIVE_INFINITY;
-		for(int i = 0; i < n; i++) {
-			if(/* A.get(enter_id)[i] > 0 */ (A.get(enter_id)[i] > tol)) {
-				double ratio = -z[i+1]/A.get(enter_id)[i];
+		for(int j = 0; j < n; j++) {
+			if(row[j] > tol) {
+				double ratio = -z[j+1]/row[j];
 				if(curr > ratio) {
 					curr = ratio;
-					var_num = non_basic[i];
-					id = i;
-				} else if(curr == ratio && var_num > non_basic[i]) {
-					var_num = non_basic[i];
-					id = i;
+					var_num = non_basic[j];
+					id = j;
+				} else if(curr == ratio && var_num > non_basic[j]) {
+					var_num = non_basic[j];
+					id = j;
 				} 
 			}
 		}
@@ -207,43 +318,13 @@ class Dictionary {
 		return id;
 	}
 	
-	public void dual_pivot(int enter_id, int leave_id) {
-		//leave and enter to the basis
-		int temp = basic.get(enter_id);
-		basic.set(enter_id, non_basic[leave_id]);
-		non_basic[leave_id] = temp;
-		//update leaving row in the dictionary
-		z[leave_id+1] = z[leave_id+1]/A.get(enter_id)[leave_id];
-		for(int i = 0; i < m; i++) {
-			if(i != enter_id) {
-				A.get(i)[leave_id] /= A.get(enter_id)[leave_id];
-			} 
-		}
-		A.get(enter_id)[leave_id] = 1/A.get(enter_id)[leave_id];
-		//update other rows
-		for(int i = 0; i < n; i++) {
-			if(i != leave_id) {
-				z[i+1] += -z[leave_id+1]*A.get(enter_id)[i];
-				for(int j = 0; j < m; j++) {
-					if(j != enter_id) {
-						A.get(j)[i] += -A.get(enter_id)[i]*A.get(j)[leave_id];
-					}
-				}
-				A.get(enter_id)[i] = -A.get(enter_id)[i]*A.get(enter_id)[leave_id];
-			}
-		}
-		//update objective coefficients
-		z[0] += -b.get(enter_id)*z[leave_id+1];
-		for(int i = 0; i < m; i++) {
-			if(i != enter_id) {
-				b.set(i, b.get(i) - b.get(enter_id)*A.get(i)[leave_id]);
-			}
-		}
-		b.set(enter_id, -b.get(enter_id)*A.get(enter_id)[leave_id]);
-	}
-	
 	public void parse(String file) throws IOException {
 		BufferedReader input = new BufferedReader(new FileReader(file));
+		parse(input);
+		input.close();
+	}
+	
+	public void parse(BufferedReader input) throws IOException {
 		String line = input.readLine();
 		String[] tokens = line.split("\\s+");
 		m = Integer.parseInt(tokens[0]);
@@ -259,10 +340,11 @@ class Dictionary {
 		for(int i = 0; i < n; i++) {
 			non_basic[i] = Integer.parseInt(tokens[i]);
 		}
+		b = new double[m];
 		line = input.readLine();
 		tokens = line.split("\\s+");	
 		for(int i = 0; i < m; i++) {
-			b.add(Double.parseDouble(tokens[i]));
+			b[i] = Double.parseDouble(tokens[i]);
 		}
 		for(int i = 0; i < m; i++) {
 			line = input.readLine();
@@ -278,7 +360,6 @@ class Dictionary {
 		for(int i = 0; i < n+1; i++) {
 			z[i] = Double.parseDouble(tokens[i]);
 		}
-		input.close();
 	}
 	
 	public String toString() {
@@ -293,7 +374,7 @@ class Dictionary {
 		}
 		s += "\n";
 		for(int i = 0; i < m; i++) {
-			s += String.format(java.util.Locale.UK, "%.2f ", b.get(i));
+			s += String.format(java.util.Locale.UK, "%.2f ", b[i]);
 		}
 		s += "\n";
 		for(int i = 0; i < m; i++) {
@@ -0,0 +1,55 @@
+//dual simplex working directly on the primal dictionary, which has to be dual feasible (z[i] <= 0)
+class DualSimplex {
+	
+	public Dictionary dict;
+	public double[] solution;
+	public int iter = 0;
+	public int enter_var;
+	public int leave_var;
+	
+	public DualSimplex(Dictionary dict) {
+		this.dict = dict;
+	}
+	
+	public void solve(boolean trace_flag) {
+		iter = 0;
+		dict.reset();
+		if(trace_flag) {
+			StdOut.println("\nDual optimization phase ... ");
+		}
+		while(true) {
+			int leave_id = dict.dual_leaving_row();
+			if(dict.is_final) {
+				solution = dict.primal_solution();
+				if(trace_flag) {
+					print_solution();
+				}
+				break;
+			}
+			int enter_id = dict.dual_entering_col(leave_id);
+			if(dict.is_unbounded) {
+				throw new ArithmeticException("Linear program is INFEASIBLE!");
+			}
+			iter++;
+			enter_var = dict.non_basic(enter_id); //cache entering and leaving vars before it would be changed by pivot() 
+			leave_var = dict.basic(leave_id);
+			dict.primal_pivot(enter_id, leave_id);
+			if(trace_flag) {
+				print_trace_info();
+			}
+		}
+	}
+	
+	public void print_trace_info() {
+		Simplex.print_trace_info(dict, iter, enter_var, leave_var);
+	}
+	
+	public void print_solution() {
+		StdOut.println("\nOptimal solution obtained after " + iter + " dual simplex iterations" + ":\n");
+		Simplex.print_values(dict, solution);
+	}
+	
+	public double[] get_solution() {
+		return solution;
+	}
+}
@@ -1,18 +1,47 @@
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
 class ILPSolver {
 	
-	private Simplex simplex;
+	public static final int HEURISTICS_FREQ = 5;   //diving and feasibility pump are run every HEURISTICS_FREQ rounds
+	public static final int MAX_DIVE_DEPTH  = 50;
+	public static final int PUMP_ITERS      = 20;
+	public static final int PARALLEL_ROWS   = 64;      //fewer fractional rows are separated serially
+	public static final double PARALLEL_TOL = 0.999;   //cosine above which the shallower of two cuts is dropped
+	public static final int PARALLEL_CHECKS = 16;      //deepest kept cuts every cut is compared with, besides its bucket
+	public static final double CUT_GRID     = 20;      //buckets of cuts by normalized coefficients rounded to 1/CUT_GRID
+	
+	private DualSimplex dual;    //Gomory cuts are reoptimized by dual simplex
+	private Dictionary original;    //copy of the original dictionary to check feasibility of the candidates against
 	private int iter;
+	private double gap_tol;
+	private double[] incumbent;
+	private double incumbent_obj = Double.NEGATIVE_INFINITY;
+	private double gap = Double.POSITIVE_INFINITY;
 	private static double tol = Dictionary.tol;
+	private ConcurrentLinkedQueue<double[]> pool = new ConcurrentLinkedQueue<>();    //rows of rejected cuts for reuse
 	
 	public ILPSolver(Dictionary dict, boolean trace_flag) {
+		this(dict, trace_flag, 0.0);
+	}
+	
+	//solving stops as soon as relative gap between the incumbent and the LP bound drops to gap_tol
+	public ILPSolver(Dictionary dict, boolean trace_flag, double gap_tol) {
+		this.gap_tol = gap_tol;
+		original = new Dictionary(dict);
 		//solving initial LP relaxation
 		try {
 			if(trace_flag) {
 				StdOut.println("\nSolving original LP relaxation ...\n");
 			}
-			simplex = new Simplex(dict, false);
+			Simplex simplex = new Simplex(dict, false);
+			dual = new DualSimplex(simplex.dict);
+			dual.solution = simplex.solution;
 		} catch (Exception e) {
 			String message = e.getMessage();
 			if(message.equals("Linear program is INFEASIBLE!")) {
@@ -29,19 +58,32 @@ class ILPSolver {
 	}
 	
 	public void solve(boolean trace_flag) {
-		simplex.dict.set_dual_view();
 		while(true) {
+			run_heuristics(trace_flag);
+			if(gap <= gap_tol) {
+				if(trace_flag) {
+					print_solution();
+				}
+				break;
+			}
 			if(add_cutting_planes()) {
 				iter++;
 				try {
-					simplex.solve(false);
+					dual.solve(false);
 				} catch (Exception e) {
 					throw new ArithmeticException("ILP is INFEASIBLE!");
 				}
 				if(trace_flag) {
-					StdOut.println(String.format(java.util.Locale.UK, "\niter %3d: current objective value: %.4f", iter, simplex.dict.z[0]));
+					StdOut.println(String.format(java.util.Locale.UK, "\niter %3d: current objective value: %.4f", iter, dual.dict.z[0]));
 				}
 			} else {
+				//integral LP solution is optimal
+				update_incumbent(dual.solution, trace_flag);
+				if(incumbent == null) {
+					incumbent = dual.solution;
+					incumbent_obj = dual.dict.z[0];
+				}
+				gap = 0;
 				if(trace_flag) {
 					print_solution();
 				}
@@ -50,37 +92,320 @@ class ILPSolver {
 		}
 	}
 	
+	//Gomory cuts of all fractional rows, separated in parallel, nearly parallel ones are
+	//filtered out keeping the deeper, the rest is appended to the dictionary at once
 	public boolean add_cutting_planes() {
-		boolean is_added = false;
-		int m = simplex.dict.m; //use old m value (during addition of cutting planes m increases);
-		int n = simplex.dict.n;
-		for(int i = 0; i < m; i++) {
-			if(!is_integral(simplex.dict.b(i))) {
-				is_added = true;
-				double[] a = new double[simplex.dict.n];
-				double b = -frac(simplex.dict.b(i));
+		final Dictionary dict = dual.dict;
+		final int n = dict.n;
+		final int[] rows = IntStream.range(0, dict.m).filter(i -> !is_integral(dict.b(i))).toArray();
+		final int k = rows.length;
+		if(k == 0) {
+			return false;
+		}
+		final double[][] a = new double[k][];
+		final double[] b = new double[k];
+		final double[] norm = new double[k];
+		final double[] depth = new double[k];
+		final long[] key = new long[k];
+		stream(k).forEach(c -> {
+			int i = rows[c];
+			double[] row = pool.poll();
+			if(row == null) {
+				row = new double[n];
+			}
+			double sum = 0;
+			for(int j = 0; j < n; j++) {
+				row[j] = frac(-dict.A(i, j));
+				sum += row[j]*row[j];
+			}
+			a[c] = row;
+			b[c] = -frac(dict.b(i));
+			norm[c] = Math.sqrt(sum);
+			depth[c] = norm[c] > 0 ? -b[c]/norm[c] : Double.POSITIVE_INFINITY;
+			long h = 0;
+			for(int j = 0; j < n && norm[c] > 0; j++) {
+				h = 31*h + Math.round(CUT_GRID*row[j]/norm[c]);
+			}
+			key[c] = h;
+		});
+		//greedy in order of depth (ties broken by row order): a cut is dropped if it is nearly parallel
+		//to one kept already, looked for among the kept cuts of its bucket and the PARALLEL_CHECKS deepest ones
+		Integer[] order = new Integer[k];
+		for(int c = 0; c < k; c++) {
+			order[c] = c;
+		}
+		Arrays.sort(order, (c, d) -> depth[c] != depth[d] ? Double.compare(depth[d], depth[c]) : Integer.compare(c, d));
+		HashMap<Long, List<Integer>> buckets = new HashMap<>();
+		int[] kept = new int[k];
+		int count = 0;
+		for(int c : order) {
+			boolean keep = true;
+			if(norm[c] > 0) {
+				List<Integer> bucket = buckets.computeIfAbsent(key[c], h -> new ArrayList<>());
+				for(int l = 0; keep && l < bucket.size(); l++) {
+					keep = !is_parallel(a, norm, c, bucket.get(l));
+				}
+				for(int l = 0; keep && l < Math.min(count, PARALLEL_CHECKS); l++) {
+					int d = kept[l];
+					keep = norm[d] == 0 || key[d] == key[c] || !is_parallel(a, norm, c, d);
+				}
+				if(keep) {
+					bucket.add(c);
+				}
+			}
+			if(keep) {
+				kept[count++] = c;
+			} else {
+				pool.offer(a[c]);
+			}
+		}
+		//appended in row order, as separated
+		Arrays.sort(kept, 0, count);
+		double[][] cuts = new double[count][];
+		double[] rhs = new double[count];
+		for(int l = 0; l < count; l++) {
+			cuts[l] = a[kept[l]];
+			rhs[l] = b[kept[l]];
+		}
+		dict.add_cutting_planes(cuts, rhs, count);
+		return true;
+	}
+	
+	private static boolean is_parallel(double[][] a, double[] norm, int c, int d) {
+		double dot = 0;
+		for(int j = 0; j < a[c].length; j++) {
+			dot += a[c][j]*a[d][j];
+		}
+		return dot > PARALLEL_TOL*norm[c]*norm[d];
+	}
+	
+	private static IntStream stream(int k) {
+		return k >= PARALLEL_ROWS ? IntStream.range(0, k).parallel() : IntStream.range(0, k);
+	}
+	
+	public void run_heuristics(boolean trace_flag) {
+		update_gap();
+		rounding(trace_flag);
+		if(iter % HEURISTICS_FREQ == 0 && gap > gap_tol) {
+			diving(trace_flag);
+		}
+		if(iter % HEURISTICS_FREQ == 0 && gap > gap_tol) {
+			feasibility_pump(trace_flag);
+		}
+	}
+	
+	//rounds current LP solution to the nearest integral point
+	public void rounding(boolean trace_flag) {
+		update_incumbent(round(dual.solution), trace_flag);
+	}
+	
+	//fixes the least fractional var to its nearest integer by a bound row and reoptimizes by dual simplex
+	public void diving(boolean trace_flag) {
+		DualSimplex dive = new DualSimplex(new Dictionary(dual.dict));
+		dive.solution = dual.solution;
+		for(int depth = 0; depth < MAX_DIVE_DEPTH; depth++) {
+			int row = -1;
+			double min_frac = 1;
+			for(int i = 0; i < dive.dict.m; i++) {
+				if(dive.dict.basic.get(i) <= dive.dict.n && !is_integral(dive.dict.b(i))) {
+					double f = Math.min(frac(dive.dict.b(i)), 1 - frac(dive.dict.b(i)));
+					if(f < min_frac) {
+						min_frac = f;
+						row = i;
+					}
+				}
+			}
+			if(row == -1) {
+				update_incumbent(round(dive.solution), trace_flag);
+				return;
+			}
+			int n = dive.dict.n;
+			double[] a = new double[n];
+			double b;
+			if(frac(dive.dict.b(row)) < 0.5) {
+				//x <= floor(b_row)
+				b = -frac(dive.dict.b(row));
 				for(int j = 0; j < n; j++) {
-					a[j] = frac(-simplex.dict.A(i, j));
+					a[j] = -dive.dict.A(row, j);
 				}
-				simplex.dict.add_cutting_plane(a, b);
+			} else {
+				//x >= ceil(b_row)
+				b = frac(dive.dict.b(row)) - 1;
+				for(int j = 0; j < n; j++) {
+					a[j] = dive.dict.A(row, j);
+				}
+			}
+			dive.dict.add_cutting_plane(a, b);
+			try {
+				dive.solve(false);
+			} catch (ArithmeticException e) {
+				return;
 			}
 		}
-		return is_added;
+	}
+	
+	//alternates between rounding and LP projection to the rounded point in L1 norm: vars rounded to 0
+	//are minimized, the others are kept by a bound row on the side of the rounded value the LP optimum
+	//is on and moved towards it, so that the objective is the L1 distance on that part of the LP polytope
+	public void feasibility_pump(boolean trace_flag) {
+		int n = dual.dict.n;
+		double[] x_lp = dual.solution;
+		double[] x_int = round(x_lp);
+		double[] c = new double[n+1];
+		for(int t = 0; t < PUMP_ITERS; t++) {
+			if(is_feasible(x_int)) {
+				update_incumbent(x_int, trace_flag);
+				return;
+			}
+			Simplex pump = new Simplex(new Dictionary(dual.dict));
+			for(int j = 0; j < n; j++) {
+				boolean above = dual.solution[j] > x_int[j];
+				c[j+1] = above || x_int[j] == 0 ? -1.0 : 1.0;
+				if(x_int[j] > 0) {
+					add_bound_row(pump.dict, j+1, x_int[j], above);
+				}
+			}
+			pump.dict.set_objective(c);
+			try {
+				pump.solve(false);
+			} catch (ArithmeticException e) {
+				return;
+			}
+			x_lp = pump.solution;
+			double[] x_new = round(x_lp);
+			if(java.util.Arrays.equals(x_new, x_int)) {
+				//cycling: flip the var which is the most distant from its rounding
+				int id = -1;
+				double max_dist = tol;
+				for(int j = 0; j < n; j++) {
+					if(Math.abs(x_lp[j] - x_int[j]) > max_dist) {
+						max_dist = Math.abs(x_lp[j] - x_int[j]);
+						id = j;
+					}
+				}
+				if(id == -1) {
+					return;
+				}
+				x_new[id] += x_lp[id] > x_int[id] ? 1 : -1;
+			}
+			x_int = x_new;
+		}
+	}
+	
+	//adds row x_id >= v (x_id <= v if !lower) expressed through the non basic vars,
+	//it has to hold at the current basic solution
+	private static void add_bound_row(Dictionary dict, int id, double v, boolean lower) {
+		int n = dict.n;
+		double[] a = new double[n];
+		double x = 0;
+		int row = dict.basic.indexOf(id);
+		for(int j = 0; j < n; j++) {
+			if(row != -1) {
+				a[j] = dict.A(row, j);
+			} else if(dict.non_basic(j) == id) {
+				a[j] = 1;
+			}
+		}
+		if(row != -1) {
+			x = dict.b(row);
+		}
+		double sign = lower ? 1 : -1;
+		for(int j = 0; j < n; j++) {
+			a[j] *= sign;
+		}
+		dict.add_cutting_plane(a, sign*(x - v));
+	}
+	
+	public void update_incumbent(double[] x, boolean trace_flag) {
+		if(!is_feasible(x)) {
+			return;
+		}
+		double obj = objective(x);
+		if(obj > incumbent_obj + tol) {
+			incumbent = x.clone();
+			incumbent_obj = obj;
+			update_gap();
+			if(trace_flag) {
+				StdOut.println(String.format(java.util.Locale.UK, "\niter %3d: new incumbent found, objective value: %.4f, gap: %.4e", iter, incumbent_obj, gap));
+			}
+		}
+	}
+	
+	//relative gap between the LP bound and the incumbent, zero within the tolerance of the dictionary
+	public void update_gap() {
+		if(incumbent != null) {
+			double bound = dual.dict.z[0];
+			gap = Math.max(0, bound - incumbent_obj)/Math.max(1, Math.abs(bound));
+			if(gap <= tol) {
+				gap = 0;
+			}
+		}
+	}
+	
+	//checks x >= 0 and Ax <= b against the original dictionary
+	public boolean is_feasible(double[] x) {
+		for(int j = 0; j < x.length; j++) {
+			if(x[j] < -tol) {
+				return false;
+			}
+		}
+		for(int i = 0; i < original.m; i++) {
+			double slack = original.b(i);
+			for(int j = 0; j < original.n; j++) {
+				slack += original.A(i, j)*x[original.non_basic(j)-1];
+			}
+			if(slack < -tol) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public double objective(double[] x) {
+		double obj = original.z[0];
+		for(int j = 0; j < original.n; j++) {
+			obj += original.z[j+1]*x[original.non_basic(j)-1];
+		}
+		return obj;
 	}
 	
 	public double[] get_solution() {
-		return simplex.solution;
+		return incumbent;
+	}
+	
+	public double get_objective() {
+		return incumbent_obj;
+	}
+	
+	public double get_gap() {
+		return gap;
 	}
 	
 	public void print_solution() {
 		StdOut.println("\n*** Results ***\n");
-		StdOut.println("Optimal solution obtained after " + iter + " cutting plane iterations" + ":\n");
-		for(int i = 0; i < simplex.dict.n; i++) {
-			StdOut.println(String.format(java.util.Locale.UK, "var " + (i+1) + ": %.4f", simplex.solution[i]));
+		if(gap > tol) {
+			StdOut.println(String.format(java.util.Locale.UK, "Solution within gap %.4e obtained after ", gap) + iter + " cutting plane iterations" + ":\n");
+		} else {
+			StdOut.println("Optimal solution obtained after " + iter + " cutting plane iterations" + ":\n");
+		}
+		for(int i = 0; i < dual.dict.n; i++) {
+			StdOut.println(String.format(java.util.Locale.UK, "var " + (i+1) + ": %.4f", incumbent[i]));
+		}
+		if(gap > tol) {
+			StdOut.println(String.format(java.util.Locale.UK, "\nIncumbent objective value: %.4f", incumbent_obj));
+		} else {
+			StdOut.println(String.format(java.util.Locale.UK, "\nOptimal objective value: %.4f", incumbent_obj));
 		}
-		StdOut.println(String.format(java.util.Locale.UK, "\nOptimal objective value: %.4f", simplex.dict.z[0]));
 	}	
 	
+	public static double[] round(double[] x) {
+		double[] r = new double[x.length];
+		for(int i = 0; i < x.length; i++) {
+			r[i] = Math.rint(x[i]);
+		}
+		return r;
+	}
+	
 	public static double frac(double a) {
 		return a - Math.floor(a);
 	}
@@ -92,10 +417,15 @@ class ILPSolver {
 	public static void main(String[] args) throws IOException {
 		Stopwatch sw = new Stopwatch();
 		boolean trace_flag = false;
-		if("-t".equals(args[1])) {
-			trace_flag = Boolean.parseBoolean(args[2]);
+		double gap_tol = 0.0;
+		for(int i = 1; i+1 < args.length; i += 2) {
+			if("-t".equals(args[i])) {
+				trace_flag = Boolean.parseBoolean(args[i+1]);
+			} else if("-g".equals(args[i])) {
+				gap_tol = Double.parseDouble(args[i+1]);
+			}
 		}
-		ILPSolver solver = new ILPSolver(new Dictionary(args[0]), trace_flag);
+		ILPSolver solver = new ILPSolver(new Dictionary(args[0]), trace_flag, gap_tol);
 		StdOut.println("\nTiming results: " + sw.elapsedTime());
 	}
 }
\ No newline at end of file
@@ -5,7 +5,7 @@ import java.io.*;
  *  
  *  compilation: javac InteriorPointLPSolver.java  
  *         
- *  usage:       java InteriorPointLPSolver filename -t trace_flag       
+ *  usage:       java InteriorPointLPSolver filename -t trace_flag [-h homogeneous_flag] [-i iterative_flag] [-f float_flag]
  *  
  *  Author:      Gorpinchenko Dmitry, KINR NASU, 2014, Copyright
  *
@@ -37,6 +37,13 @@ class InteriorPointLPSolver {
 	public static final double SIGMA  = 0.9;
 	public static final double BIG    = Double.POSITIVE_INFINITY;
 	public static final double BOUND  = 1e9;
+	public static final double CG_TOL = 1e-2;    //loosest CG residual relative to the right hand side
+	public static final double CG_FORCING = 0.1;    //CG residual (scaled by y) relative to the target mu
+	public static final double CG_MIN_TOL = 1e-12;
+	public static final int    CG_MAXITS = 400;
+	public static final int    CG_RANK = 32;    //least rows of the normal matrix factorized exactly in the preconditioner
+	public static final int    REFINE_ITERS = 10;
+	public static final double REFINE_TOL   = EPS*1e-4;    //relative residual of the refined normal equations solve
 	
 	private double[][] A;
 	private double[] b;
@@ -47,14 +54,87 @@ class InteriorPointLPSolver {
 	private int n;	
 	private int iter;
 	private boolean is_optimal, is_infeasible, is_unbounded; 
+	//iterative mode: A kept in compressed sparse rows only, normal equations solved by PCG without forming them;
+	//with many more active constraints than pivots of the preconditioner the steps stay inexact, and the
+	//method may run into MAXITS where the direct mode converges
+	private boolean iterative;
+	private int cg_iter;
+	private double[][] AT;
+	private int[] row_ptr;
+	private int[] col_idx;
+	private double[] val;
+	private double[] cg_r, cg_z, cg_p, cg_q, cg_d, cg_tn;
+	//partial Cholesky preconditioner: LDL of the pivot rows, the rest coupled by pc_L21 and scaled by the Schur diagonal;
+	//the pivot count is fixed at max(CG_RANK, nnz/m), so that it takes O(nnz + m) memory like A itself
+	private int[] pc_pivot;    //pc_pivot[k] = row of the kth pivot
+	private int[] pc_pos;    //position among the pivots, -1 for the rest
+	private double[][] pc_M;
+	private double[][] pc_L;
+	private double[] pc_D;
+	private double[][] pc_L21;
+	private double[] pc_u;
+	//direct mode: normal matrix and its LDL factor, in float with iterative refinement in mixed mode
+	private boolean mixed;
+	private double[][] tempmm;
+	private double[][] L;
+	private double[] D;
+	private float[][] Af;
+	private float[][] Lf;
 	
 	public InteriorPointLPSolver(double[][] A, double[] b, double[] c) {
+		this(A, b, c, false);
+	}
+	
+	//takes A, b, c from a dictionary in its initial (slack) form
+	public InteriorPointLPSolver(Dictionary dict, boolean iterative, boolean mixed) {
+		this(minus_A(dict), b_vector(dict), c_vector(dict), iterative, mixed);
+	}
+	
+	public InteriorPointLPSolver(double[][] A, double[] b, double[] c, boolean iterative) {
+		this(A, b, c, iterative, false);
+	}
+	
+	//mixed: A (for forming the normal matrix) and the factor are kept in float, solves are refined in double;
+	//the float copy takes the place of the double transpose, A'y is summed over the rows of A instead
+	public InteriorPointLPSolver(double[][] A, double[] b, double[] c, boolean iterative, boolean mixed) {
 		this.A = A;
 		this.b = b;
 		this.c = c;
+		this.iterative = iterative;
+		this.mixed = mixed && !iterative;
 		n = c.length;
 		m = b.length;
 		x = new double[n];
+		cg_r  = new double[m];
+		cg_z  = new double[m];
+		cg_q  = new double[m];
+		cg_tn = new double[n];
+		if(iterative) {
+			to_sparse();
+			this.A = null;
+			cg_p  = new double[m];
+			cg_d  = new double[m];
+			pc_pos = new int[m];
+			pc_alloc(Math.min(m, Math.max(CG_RANK, val.length/Math.max(m, 1))));
+		} else {
+			AT = this.mixed ? null : transpose(A);
+			D = new double[m];
+		}
+		if(this.mixed) {
+			Af = new float[m][n];
+			for(int i = 0; i < m; i++) {
+				for(int j = 0; j < n; j++) {
+					Af[i][j] = (float) A[i][j];
+				}
+			}
+			Lf = new float[m][];
+			for(int i = 0; i < m; i++) {
+				Lf[i] = new float[i+1];
+			}
+		} else if(!iterative) {
+			tempmm = new double[m][m];
+			L = new double[m][m];
+		}
 	}
 	
 	public void solve(boolean trace_flag) {
@@ -71,14 +151,13 @@ class InteriorPointLPSolver {
 		double[] rp  = new double[m];
 		double[] rd  = new double[n];
 		double[] rhs = new double[m];
+		double[] res = new double[m];
 		double[] ATy = new double[n];
 		double[] Ax  = new double[m]; 
 		double[] dn  = new double[n];
 		double[] dm  = new double[m];
 		double[] tempn = new double[n];
 		double[] tempm = new double[m];
-		double[][] tempmm = new double[m][m];
-		double[][] AT = transpose(A);
 		double rpfact = 1 + Math.sqrt(dotprod(b, b));
 		double rdfact = 1 + Math.sqrt(dotprod(c, c));
 		set_initial_point(x, xs, y, ys);
@@ -86,12 +165,12 @@ class InteriorPointLPSolver {
 		double normrd_old = BIG;
 		double dual_obj, normrp, normrd, normgap, gap, mu, alpha_p, alpha_d;
 		for(iter = 0; iter < MAXITS; iter++) {
-			matvecprod(Ax, A, x);
+			A_mul(Ax, x);
 			for(int i = 0; i < m; i++) {
 				rp[i] = Ax[i] + xs[i] - b[i];
 			}
 			normrp = Math.sqrt(dotprod(rp, rp))/rpfact;
-			matvecprod(ATy, AT, y);
+			AT_mul(ATy, y);
 			for(int i = 0; i < n; i++) {
 				rd[i] = ATy[i] - ys[i] - c[i];
 			}
@@ -125,31 +204,22 @@ class InteriorPointLPSolver {
 			for(int i = 0; i < n; i++) {
 				tempn[i] = x[i] - mu/ys[i] + dn[i]*rd[i];
 			}
-			matvecprod(tempm, A, tempn);
+			A_mul(tempm, tempn);
 			for(int i = 0; i < m; i++) {
 				rhs[i] = rp[i] + mu/y[i] - xs[i] - tempm[i];
 			}
-			for(int i = 0; i < m; i++) {
-				for(int j = 0; j < m; j++) {
-					tempmm[i][j] = 0;
-					for(int k = 0; k < n; k++) {
-						tempmm[i][j] += A[i][k]*A[j][k]*dn[k];
-					}
-				}
-			}
-			for(int i = 0; i < m; i++) {
-				tempmm[i][i] += dm[i];
-			} 
-			LDL(dy, tempmm, rhs);
-			matvecprod(tempn, AT, dy);
+			normal_factor(dn, dm);
+			normal_solve(dy, res, dn, dm, rhs, cg_tol(mu, y));
+			AT_mul(tempn, dy);
 			for(int i = 0; i < n; i++) {
 				dys[i] = tempn[i] + rd[i];
 			}
 			for(int i = 0; i < n; i++) {
 				dx[i] = -dn[i]*dys[i] + mu/ys[i] - x[i];
 			}
+			//residual of the normal equations goes to the slacks, keeping A*dx + dxs = -rp exact
 			for(int i = 0; i < m; i++) {
-				dxs[i] = -dm[i]*dy[i] + mu/y[i] - xs[i];
+				dxs[i] = -dm[i]*dy[i] + mu/y[i] - xs[i] - res[i];
 			} 
 			alpha_p = 1;
 			for(int i = 0; i < n; i++) {
@@ -188,6 +258,558 @@ class InteriorPointLPSolver {
 		}
 	}
 	
+	//homogeneous self-dual embedding: starts from all ones and detects infeasibility by Farkas certificates
+	//
+	//  Ax + xs - b*tau = 0,  A'y - ys - c*tau = 0,  c*x - b*y - kappa = 0,  all vars >= 0
+	public void solve_homogeneous(boolean trace_flag) {
+		if(trace_flag) {
+			StdOut.println("\niter |  primal obj |    dual obj |      normrp |      normrd |     normgap |\n");
+		}
+		double[] xh  = new double[n];
+		double[] xs  = new double[m];
+		double[] y   = new double[m];
+		double[] ys  = new double[n];
+		double[] dx  = new double[n];
+		double[] dxs = new double[m];
+		double[] dy  = new double[m];
+		double[] dys = new double[n];
+		double[] dx1  = new double[n];
+		double[] dy1  = new double[m];
+		double[] dys1 = new double[n];
+		double[] rp  = new double[m];
+		double[] rd  = new double[n];
+		double[] rhs = new double[m];
+		double[] res  = new double[m];
+		double[] res1 = new double[m];
+		double[] ATy = new double[n];
+		double[] Ax  = new double[m]; 
+		double[] dn  = new double[n];
+		double[] dm  = new double[m];
+		double[] tempn = new double[n];
+		double[] tempm = new double[m];
+		double rpfact = 1 + Math.sqrt(dotprod(b, b));
+		double rdfact = 1 + Math.sqrt(dotprod(c, c));
+		double tau = 1, kappa = 1;
+		for(int i = 0; i < n; i++) {
+			xh[i] = 1;
+			ys[i] = 1;
+		}
+		for(int i = 0; i < m; i++) {
+			xs[i] = 1;
+			y[i]  = 1;
+		}
+		double dual_obj, normrp, normrd, normgap, gap, mu, rg, cx, by, dtau, dkappa, alpha;
+		for(iter = 0; iter < MAXITS; iter++) {
+			A_mul(Ax, xh);
+			AT_mul(ATy, y);
+			for(int i = 0; i < m; i++) {
+				rp[i] = b[i]*tau - Ax[i] - xs[i];
+			}
+			for(int i = 0; i < n; i++) {
+				rd[i] = c[i]*tau - ATy[i] + ys[i];
+			}
+			cx = dotprod(c, xh);
+			by = dotprod(b, y);
+			rg = kappa - cx + by;
+			gap = dotprod(xh, ys) + dotprod(xs, y);
+			mu = (gap + tau*kappa)/(n+m+1);
+			primal_obj = cx/tau;
+			dual_obj = by/tau;
+			normrp = Math.sqrt(dotprod(rp, rp))/tau/rpfact;
+			normrd = Math.sqrt(dotprod(rd, rd))/tau/rdfact;
+			normgap = gap/(tau*tau)/(1+Math.abs(primal_obj));
+			if(trace_flag) {
+				print_trace_info(dual_obj, normrp, normrd, normgap);
+			}
+			if(normrp < EPS && normrd < EPS && normgap < EPS) {
+				for(int i = 0; i < n; i++) {
+					x[i] = xh[i]/tau;
+				}
+				is_optimal = true;
+				return;
+			}
+			if(tau < kappa) {
+				//y >= 0, A'y >= 0, b*y < 0 proves primal infeasibility
+				if(by < 0 && -min_entry(ATy)/(-by) < EPS) {
+					is_infeasible = true;
+					return;
+				}
+				//x >= 0, Ax <= 0, c*x > 0 proves dual infeasibility
+				if(cx > 0 && max_entry(Ax)/cx < EPS) {
+					is_unbounded = true;
+					return;
+				}
+			}
+			mu *= DELTA;
+			for(int i = 0; i < n; i++) {
+				dn[i] = xh[i]/ys[i];
+			}
+			for(int i = 0; i < m; i++) {
+				dm[i] = xs[i]/y[i];
+			}
+			normal_factor(dn, dm);
+			//direction is affine in dtau: dy = dy + dy1*dtau, etc.
+			for(int i = 0; i < n; i++) {
+				tempn[i] = mu/ys[i] - xh[i] + (1-DELTA)*dn[i]*rd[i];
+			}
+			A_mul(tempm, tempn);
+			for(int i = 0; i < m; i++) {
+				rhs[i] = tempm[i] + mu/y[i] - xs[i] - (1-DELTA)*rp[i];
+			}
+			normal_solve(dy, res, dn, dm, rhs, cg_tol(mu, y));
+			for(int i = 0; i < n; i++) {
+				tempn[i] = dn[i]*c[i];
+			}
+			A_mul(tempm, tempn);
+			for(int i = 0; i < m; i++) {
+				rhs[i] = tempm[i] - b[i];
+			}
+			normal_solve(dy1, res1, dn, dm, rhs, cg_tol(mu, y));
+			AT_mul(dys, dy);
+			AT_mul(dys1, dy1);
+			for(int i = 0; i < n; i++) {
+				dys[i] -= (1-DELTA)*rd[i];
+				dys1[i] -= c[i];
+				dx[i] = mu/ys[i] - xh[i] - dn[i]*dys[i];
+				dx1[i] = -dn[i]*dys1[i];
+			}
+			dtau = ((1-DELTA)*rg - dotprod(c, dx) + dotprod(b, dy) + mu/tau - kappa)/(dotprod(c, dx1) - dotprod(b, dy1) + kappa/tau);
+			dkappa = mu/tau - kappa - kappa*dtau/tau;
+			for(int i = 0; i < m; i++) {
+				dy[i] += dy1[i]*dtau;
+				dxs[i] = mu/y[i] - xs[i] - dm[i]*dy[i] - res[i] - res1[i]*dtau;
+			}
+			for(int i = 0; i < n; i++) {
+				dys[i] += dys1[i]*dtau;
+				dx[i] += dx1[i]*dtau;
+			}
+			alpha = min(max_step(xh, dx), max_step(xs, dxs));
+			alpha = min(alpha, min(max_step(y, dy), max_step(ys, dys)));
+			if(tau + alpha*dtau < 0) {
+				alpha = -tau/dtau;
+			}
+			if(kappa + alpha*dkappa < 0) {
+				alpha = -kappa/dkappa;
+			}
+			alpha *= SIGMA;
+			for(int i = 0; i < n; i++) {
+				xh[i] += alpha*dx[i];
+				ys[i] += alpha*dys[i];
+			}
+			for(int i = 0; i < m; i++) {
+				xs[i] += alpha*dxs[i];
+				y[i]  += alpha*dy[i];
+			}
+			tau += alpha*dtau;
+			kappa += alpha*dkappa;
+		}
+	}
+	
+	//largest step in [0, 1] keeping x + alpha*dx nonnegative
+	public static double max_step(double[] x, double[] dx) {
+		double alpha = 1;
+		for(int i = 0; i < x.length; i++) {
+			if(x[i] + alpha*dx[i] < 0) {
+				alpha = -x[i]/dx[i];
+			}
+		}
+		return alpha;
+	}
+	
+	//factorizes A*diag(dn)*A' + diag(dm) for the following normal_solve() calls (the preconditioner for PCG)
+	public void normal_factor(double[] dn, double[] dm) {
+		if(iterative) {
+			partial_cholesky(dn, dm);
+			return;
+		}
+		if(mixed) {
+			normal_matrix_float(dn, dm);
+			LDL_factor_float(Lf, D);
+		} else {
+			normal_matrix(tempmm, dn, dm);
+			LDL_factor(tempmm, L, D);
+		}
+	}
+	
+	private void pc_alloc(int k) {
+		pc_pivot = new int[k];
+		pc_M = new double[k][k];
+		pc_L = new double[k][k];
+		pc_D = new double[k];
+		pc_L21 = new double[m][k];
+		pc_u = new double[k];
+	}
+	
+	//res gets rhs minus the product of the normal matrix with x: the PCG residual, zero for direct solves;
+	//tol is the bound on its norm for the inexact PCG solve
+	public void normal_solve(double[] x, double[] res, double[] dn, double[] dm, double[] rhs, double tol) {
+		for(int i = 0; i < m; i++) {
+			res[i] = 0;
+		}
+		if(iterative) {
+			double norm_rhs = Math.sqrt(dotprod(rhs, rhs));
+			tol = Math.max(CG_MIN_TOL*norm_rhs, min(CG_TOL*norm_rhs, tol));
+			//a missed tolerance is accepted, the residual goes to the slack step all the same
+			pcg(x, dn, dm, rhs, tol);
+			for(int i = 0; i < m; i++) {
+				res[i] = cg_r[i];
+			}
+		} else if(mixed) {
+			if(!refined_solve(x, dn, dm, rhs)) {
+				//refinement does not converge, fall back to full precision for the rest of the solve
+				mixed = false;
+				Af = null;
+				Lf = null;
+				tempmm = new double[m][m];
+				L = new double[m][m];
+				normal_factor(dn, dm);
+				LDL_solve(x, L, D, rhs);
+			}
+		} else {
+			LDL_solve(x, L, D, rhs);
+		}
+	}
+	
+	public boolean is_mixed() {
+		return mixed;
+	}
+	
+	//iterative refinement: corrections come from the float factor, residuals are computed in double with A
+	private boolean refined_solve(double[] x, double[] dn, double[] dm, double[] rhs) {
+		double[] r = cg_r, d = cg_z, q = cg_q;
+		double norm_rhs = Math.sqrt(dotprod(rhs, rhs));
+		double norm_r = BIG;
+		for(int i = 0; i < m; i++) {
+			x[i] = 0;
+			r[i] = rhs[i];
+		}
+		for(int it = 0; it < REFINE_ITERS; it++) {
+			LDL_solve_float(d, Lf, D, r);
+			for(int i = 0; i < m; i++) {
+				x[i] += d[i];
+			}
+			normal_mul(q, dn, dm, x);
+			for(int i = 0; i < m; i++) {
+				r[i] = rhs[i] - q[i];
+			}
+			double norm = Math.sqrt(dotprod(r, r));
+			if(norm <= REFINE_TOL*norm_rhs) {
+				return true;
+			}
+			if(!(norm < norm_r)) {
+				return false;
+			}
+			norm_r = norm;
+		}
+		return false;
+	}
+	
+	//lower triangle of A*diag(dn)*A' + diag(dm) from the float copy of A, summed in double
+	private void normal_matrix_float(double[] dn, double[] dm) {
+		for(int i = 0; i < m; i++) {
+			float[] Ai = Af[i];
+			for(int j = 0; j <= i; j++) {
+				float[] Aj = Af[j];
+				double sum = 0;
+				for(int k = 0; k < n; k++) {
+					sum += Ai[k]*(double) Aj[k]*dn[k];
+				}
+				Lf[i][j] = (float) sum;
+			}
+			Lf[i][i] += (float) dm[i];
+		}
+	}
+	
+	//in place LDL of a lower triangle stored in float, with D and all sums in double
+	public static void LDL_factor_float(float[][] L, double[] D) {
+		int n = D.length;
+		for(int j = 0; j < n; j++) {
+			double sum = 0;
+			for(int k = 0; k < j; k++) {
+				sum += (double) L[j][k]*L[j][k]*D[k];
+			}
+			D[j] = L[j][j] - sum;
+			for(int i = j+1; i < n; i++) {
+				sum = 0;
+				for(int k = 0; k < j; k++) {
+					sum += (double) L[i][k]*L[j][k]*D[k];
+				}
+				L[i][j] = (float) ((L[i][j] - sum)/D[j]);
+			}
+			L[j][j] = 1;
+		}
+	}
+	
+	public static void LDL_solve_float(double[] x, float[][] L, double[] D, double[] b) {
+		int n = D.length;
+		double sum = 0;
+		for(int i = 0; i < n; i++) {
+			sum = 0;
+			for(int k = 0; k < i; k++) {
+				sum += L[i][k]*x[k];
+			}
+			x[i] = b[i] - sum;
+		}
+		for(int i = 0; i < n; i++) {
+			x[i] /= D[i];
+		}
+		//backsubstitution
+		for(int i = n-1; i >= 0; i--) {
+			sum = 0;
+			for(int k = i+1; k < n; k++) {
+				sum += L[k][i]*x[k];
+			}
+			x[i] -= sum;
+		}
+	}
+	
+	//conjugate gradients with partial Cholesky preconditioner on (A*diag(dn)*A' + diag(dm))*x = rhs,
+	//the matrix is only applied through products with A and A'
+	//stops once the norm of the residual is below tol, false if it is not reached
+	public boolean pcg(double[] x, double[] dn, double[] dm, double[] rhs, double tol) {
+		double[] r = cg_r, z = cg_z, p = cg_p, q = cg_q;
+		for(int i = 0; i < m; i++) {
+			x[i] = 0;
+			r[i] = rhs[i];
+		}
+		precondition(z, r);
+		for(int i = 0; i < m; i++) {
+			p[i] = z[i];
+		}
+		double rz = dotprod(r, z);
+		for(int it = 0; it < CG_MAXITS; it++) {
+			if(Math.sqrt(dotprod(r, r)) <= tol) {
+				return true;
+			}
+			cg_iter++;
+			normal_mul(q, dn, dm, p);
+			double alpha = rz/dotprod(p, q);
+			for(int i = 0; i < m; i++) {
+				x[i] += alpha*p[i];
+				r[i] -= alpha*q[i];
+			}
+			precondition(z, r);
+			double rz_new = dotprod(r, z);
+			double beta = rz_new/rz;
+			rz = rz_new;
+			for(int i = 0; i < m; i++) {
+				p[i] = z[i] + beta*p[i];
+			}
+		}
+		//the updated residual drifts from the true one when CG stalls
+		normal_mul(q, dn, dm, x);
+		for(int i = 0; i < m; i++) {
+			r[i] = rhs[i] - q[i];
+		}
+		return Math.sqrt(dotprod(r, r)) <= tol;
+	}
+	
+	//partial Cholesky of M = A*diag(dn)*A' + diag(dm): the rows with the largest diagonal (where the
+	//ill conditioning near the optimum concentrates) are pivots P, the rest Q, and
+	//
+	//  M ~ [L11 0; L21 I] * diag(D1, S) * [L11' L21'; 0 I]
+	//
+	//with L11*D1*L11' = M_PP exact, L21 = M_QP*inv(L11*D1)' and S the diagonal of the Schur complement
+	private void partial_cholesky(double[] dn, double[] dm) {
+		double[] diag = cg_d;
+		for(int i = 0; i < m; i++) {
+			diag[i] = dm[i];
+			for(int k = row_ptr[i]; k < row_ptr[i+1]; k++) {
+				diag[i] += val[k]*val[k]*dn[col_idx[k]];
+			}
+			pc_pos[i] = -1;
+		}
+		int rank = pc_pivot.length;
+		for(int l = 0; l < rank; l++) {
+			int best = -1;
+			for(int i = 0; i < m; i++) {
+				if(pc_pos[i] < 0 && (best < 0 || diag[i] > diag[best])) {
+					best = i;
+				}
+			}
+			pc_pivot[l] = best;
+			pc_pos[best] = l;
+		}
+		//columns of M at the pivots, M_PP goes to pc_M, M_QP to pc_L21
+		for(int l = 0; l < rank; l++) {
+			int p = pc_pivot[l];
+			for(int j = 0; j < n; j++) {
+				cg_tn[j] = 0;
+			}
+			for(int k = row_ptr[p]; k < row_ptr[p+1]; k++) {
+				cg_tn[col_idx[k]] = val[k]*dn[col_idx[k]];
+			}
+			A_mul(cg_q, cg_tn);
+			cg_q[p] += dm[p];
+			for(int i = 0; i < m; i++) {
+				if(pc_pos[i] >= 0) {
+					pc_M[pc_pos[i]][l] = cg_q[i];
+				} else {
+					pc_L21[i][l] = cg_q[i];
+				}
+			}
+		}
+		LDL_factor(pc_M, pc_L, pc_D);
+		for(int i = 0; i < m; i++) {
+			if(pc_pos[i] >= 0) {
+				continue;
+			}
+			double[] l21 = pc_L21[i];
+			double schur = diag[i];
+			for(int l = 0; l < rank; l++) {
+				double sum = l21[l];
+				for(int k = 0; k < l; k++) {
+					sum -= pc_L[l][k]*l21[k]*pc_D[k];
+				}
+				l21[l] = sum/pc_D[l];
+				schur -= l21[l]*l21[l]*pc_D[l];
+			}
+			//the dropped off-diagonal part may leave it too small, the plain diagonal is kept then
+			diag[i] = schur > dm[i] ? schur : diag[i];
+		}
+	}
+	
+	//z = inverse of the partial Cholesky preconditioner times r
+	private void precondition(double[] z, double[] r) {
+		int rank = pc_pivot.length;
+		double[] u = pc_u;
+		for(int l = 0; l < rank; l++) {
+			double sum = r[pc_pivot[l]];
+			for(int k = 0; k < l; k++) {
+				sum -= pc_L[l][k]*u[k];
+			}
+			u[l] = sum;
+		}
+		for(int i = 0; i < m; i++) {
+			if(pc_pos[i] < 0) {
+				double sum = r[i];
+				double[] l21 = pc_L21[i];
+				for(int l = 0; l < rank; l++) {
+					sum -= l21[l]*u[l];
+				}
+				z[i] = sum/cg_d[i];
+			}
+		}
+		for(int l = 0; l < rank; l++) {
+			u[l] /= pc_D[l];
+		}
+		for(int i = 0; i < m; i++) {
+			if(pc_pos[i] < 0) {
+				double[] l21 = pc_L21[i];
+				for(int l = 0; l < rank; l++) {
+					u[l] -= l21[l]*z[i];
+				}
+			}
+		}
+		for(int l = rank-1; l >= 0; l--) {
+			double sum = u[l];
+			for(int k = l+1; k < rank; k++) {
+				sum -= pc_L[k][l]*z[pc_pivot[k]];
+			}
+			z[pc_pivot[l]] = sum;
+		}
+	}
+	
+	//inexact Newton: with the CG residual r moved to the slack step, r*y perturbs the complementarity
+	//products, so |r| is kept below a fraction of the target mu over max y
+	public static double cg_tol(double mu, double[] y) {
+		return CG_FORCING*mu/inf_norm(y);
+	}
+	
+	//q = (A*diag(dn)*A' + diag(dm))*p
+	public void normal_mul(double[] q, double[] dn, double[] dm, double[] p) {
+		AT_mul(cg_tn, p);
+		for(int i = 0; i < n; i++) {
+			cg_tn[i] *= dn[i];
+		}
+		A_mul(q, cg_tn);
+		for(int i = 0; i < m; i++) {
+			q[i] += dm[i]*p[i];
+		}
+	}
+	
+	public void A_mul(double[] b, double[] x) {
+		if(!iterative) {
+			matvecprod(b, A, x);
+			return;
+		}
+		for(int i = 0; i < m; i++) {
+			double sum = 0;
+			for(int k = row_ptr[i]; k < row_ptr[i+1]; k++) {
+				sum += val[k]*x[col_idx[k]];
+			}
+			b[i] = sum;
+		}
+	}
+	
+	public void AT_mul(double[] b, double[] y) {
+		if(!iterative && AT != null) {
+			matvecprod(b, AT, y);
+			return;
+		}
+		if(!iterative) {
+			for(int j = 0; j < n; j++) {
+				b[j] = 0;
+			}
+			for(int i = 0; i < m; i++) {
+				double[] Ai = A[i];
+				double yi = y[i];
+				for(int j = 0; j < n; j++) {
+					b[j] += Ai[j]*yi;
+				}
+			}
+			return;
+		}
+		for(int j = 0; j < n; j++) {
+			b[j] = 0;
+		}
+		for(int i = 0; i < m; i++) {
+			for(int k = row_ptr[i]; k < row_ptr[i+1]; k++) {
+				b[col_idx[k]] += val[k]*y[i];
+			}
+		}
+	}
+	
+	private void to_sparse() {
+		int nnz = 0;
+		for(int i = 0; i < m; i++) {
+			for(int j = 0; j < n; j++) {
+				if(A[i][j] != 0) {
+					nnz++;
+				}
+			}
+		}
+		row_ptr = new int[m+1];
+		col_idx = new int[nnz];
+		val = new double[nnz];
+		int k = 0;
+		for(int i = 0; i < m; i++) {
+			row_ptr[i] = k;
+			for(int j = 0; j < n; j++) {
+				if(A[i][j] != 0) {
+					col_idx[k] = j;
+					val[k++] = A[i][j];
+				}
+			}
+		}
+		row_ptr[m] = k;
+	}
+	
+	//A*diag(dn)*A' + diag(dm)
+	public void normal_matrix(double[][] tempmm, double[] dn, double[] dm) {
+		for(int i = 0; i < m; i++) {
+			for(int j = 0; j < m; j++) {
+				tempmm[i][j] = 0;
+				for(int k = 0; k < n; k++) {
+					tempmm[i][j] += A[i][k]*A[j][k]*dn[k];
+				}
+			}
+		}
+		for(int i = 0; i < m; i++) {
+			tempmm[i][i] += dm[i];
+		} 
+	}
+	
 	public void set_initial_point(double[] x, double[] xs, double[] y, double[] ys) {
 		for(int i = 0; i < n; i++) {
 			x[i]  = 1000.0;
@@ -199,6 +821,26 @@ class InteriorPointLPSolver {
 		}
 	}
 	
+	public double[] get_solution() {
+		return x;
+	}
+	
+	public double get_objective() {
+		return primal_obj;
+	}
+	
+	public boolean is_optimal() {
+		return is_optimal;
+	}
+	
+	public boolean is_infeasible() {
+		return is_infeasible;
+	}
+	
+	public boolean is_unbounded() {
+		return is_unbounded;
+	}
+	
 	public void print_trace_info(double dual_obj, double normrp, double normrd, double normgap) {
 		StdOut.println(String.format(java.util.Locale.UK, "%4d | %11.4e | %11.4e | %11.4e | %11.4e | %11.4e |", iter, primal_obj, dual_obj, normrp, normrd, normgap));
 	}
@@ -207,6 +849,9 @@ class InteriorPointLPSolver {
 		StdOut.println("\n******* Results *******\n");
 		if(is_optimal) {
 			StdOut.println("Optimal solution found after " + iter + " iteration of a central path algorithm\n");
+			if(iterative) {
+				StdOut.println("Newton systems solved by " + cg_iter + " PCG iterations\n");
+			}
 			for(int i = 0; i < n; i++) {
 				if(x[i] > EPS) {
 					StdOut.println(String.format(java.util.Locale.UK, " x%-3d = %11.4e", i+1, x[i]));
@@ -228,10 +873,15 @@ class InteriorPointLPSolver {
 	
 	public static void LDL(double[] x, double[][] A, double[] b) {
 		int n = A.length;
-		double sum = 0;
-		//factorization
 		double[][] L = new double[n][n];
 		double[] D = new double[n];
+		LDL_factor(A, L, D);
+		LDL_solve(x, L, D, b);
+	}
+	
+	public static void LDL_factor(double[][] A, double[][] L, double[] D) {
+		int n = A.length;
+		double sum = 0;
 		for(int i = 0; i < n; i++) {
 			L[i][i] = 1;
 		}
@@ -252,6 +902,11 @@ class InteriorPointLPSolver {
 				L[i][j] = (A[i][j] - sum)/D[j];
 			}
 		}
+	}
+	
+	public static void LDL_solve(double[] x, double[][] L, double[] D, double[] b) {
+		int n = D.length;
+		double sum = 0;
 		double[] y = new double[n];
 		for(int i = 0; i < n; i++) {
 			sum = 0;
@@ -280,6 +935,24 @@ class InteriorPointLPSolver {
 		return norm;
 	}	
 	
+	public static double min_entry(double[] x) {
+		double min = BIG;
+		for(int i = 0; i < x.length; i++) {
+			min = min(min, x[i]);
+		}
+		return min;
+	}
+	
+	public static double max_entry(double[] x) {
+		double max = -BIG;
+		for(int i = 0; i < x.length; i++) {
+			if(max < x[i]) {
+				max = x[i];
+			}
+		}
+		return max;
+	}
+	
 	public static double dotprod(double[] a, double[] b) {
 		double dot = 0;
 		for(int i = 0; i < a.length; i++) {
@@ -306,6 +979,32 @@ class InteriorPointLPSolver {
 		return AT;
 	}
 	
+	private static double[][] minus_A(Dictionary dict) {
+		double[][] A = new double[dict.m][dict.n];
+		for(int i = 0; i < dict.m; i++) {
+			for(int j = 0; j < dict.n; j++) {
+				A[i][j] = -dict.A(i, j);
+			}
+		}
+		return A;
+	}
+	
+	private static double[] b_vector(Dictionary dict) {
+		double[] b = new double[dict.m];
+		for(int i = 0; i < dict.m; i++) {
+			b[i] = dict.b(i);
+		}
+		return b;
+	}
+	
+	private static double[] c_vector(Dictionary dict) {
+		double[] c = new double[dict.n];
+		for(int i = 0; i < dict.n; i++) {
+			c[i] = dict.z[i+1];
+		}
+		return c;
+	}
+	
 	public static void main(String[] args) throws IOException {
 		Stopwatch sw = new Stopwatch();
 		BufferedReader input = new BufferedReader(new FileReader(args[0]));
@@ -330,8 +1029,24 @@ class InteriorPointLPSolver {
 			c[i] = Double.parseDouble(tokens[i+1]);
 		}
 		input.close();
-		InteriorPointLPSolver solver = new InteriorPointLPSolver(A, b, c);
-		solver.solve(Boolean.parseBoolean(args[2]));
+		boolean trace_flag = false, homogeneous = false, iterative = false, mixed = false;
+		for(int i = 1; i+1 < args.length; i += 2) {
+			if("-t".equals(args[i])) {
+				trace_flag = Boolean.parseBoolean(args[i+1]);
+			} else if("-h".equals(args[i])) {
+				homogeneous = Boolean.parseBoolean(args[i+1]);
+			} else if("-i".equals(args[i])) {
+				iterative = Boolean.parseBoolean(args[i+1]);
+			} else if("-f".equals(args[i])) {
+				mixed = Boolean.parseBoolean(args[i+1]);
+			}
+		}
+		InteriorPointLPSolver solver = new InteriorPointLPSolver(A, b, c, iterative, mixed);
+		if(homogeneous) {
+			solver.solve_homogeneous(trace_flag);
+		} else {
+			solver.solve(trace_flag);
+		}
 		solver.print_results();
 		StdOut.println("\nTiming results: " + sw.elapsedTime()); 
 	}
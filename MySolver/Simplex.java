@@ -2,81 +2,279 @@ import java.io.*;
 
 class Simplex {
 	
+	public static final int PHASE1_DUAL      = 0;    //dual simplex on the objective replaced by all -1
+	public static final int PHASE1_AUXILIARY = 1;    //primal simplex on the auxiliary problem max -x0
+	public static final int PHASE1_BIG_M     = 2;    //primal simplex on the composite objective c*x - M*x0
+	public static final double BIG_M = 1e6;
+	
 	public Dictionary dict;
 	public double[] solution;
 	public int iter = 0;
+	public int crash_iter = 0;
+	public int phase1_iter = 0;
+	public int phase2_iter = 0;
 	public int enter_var;
 	public int leave_var;
+	private boolean crash;
+	private int phase1 = PHASE1_DUAL;
 	
 	public Simplex(Dictionary dict, boolean trace_flag) {
+		this(dict, trace_flag, false, PHASE1_DUAL);
+	}
+	
+	public Simplex(Dictionary dict, boolean trace_flag, boolean crash, int phase1) {
 		this.dict = dict;
+		this.crash = crash;
+		this.phase1 = phase1;
 		if(initialize(trace_flag)) {
 			solve(trace_flag);
+			phase2_iter = iter;
 		} else {
 			throw new ArithmeticException("Linear program is INFEASIBLE!");
 		}
 	}
 	
+	//warm start from a basis (var ids) optimal for a model of the same structure,
+	//falls back to the cold start if the dictionary in that basis is neither primal nor dual feasible
+	public Simplex(Dictionary dict, boolean trace_flag, int[] basis) {
+		Dictionary warm = new Dictionary(dict);
+		warm.set_basis(basis);
+		this.dict = warm;
+		if(is_feasible()) {
+			solve(trace_flag);
+		} else if(warm.is_dual_feasible()) {
+			DualSimplex dual = new DualSimplex(warm);
+			dual.solve(trace_flag);
+			solution = dual.solution;
+			iter = dual.iter;
+		} else {
+			this.dict = dict;
+			if(initialize(trace_flag)) {
+				solve(trace_flag);
+			} else {
+				throw new ArithmeticException("Linear program is INFEASIBLE!");
+			}
+		}
+		phase2_iter = iter;
+	}
+	
+	//wraps already initialized dictionary, solve() has to be called explicitly
+	public Simplex(Dictionary dict) {
+		this.dict = dict;
+	}
+	
 	//returns true in case of obtaining a feasible initial dictionary, false otherwise
 	public boolean initialize(boolean trace_flag) {
-		boolean is_needed = false;
+		if(is_feasible()) {
+			return true;
+		}
+		//copy an initial objective (by var id) in order to restore it later on
+		double[] primal_z = new double[dict.n + 1];
+		primal_z[0] = dict.z[0];
+		for(int i = 0; i < dict.n; i++) {
+			if(dict.non_basic(i) <= dict.n) {
+				primal_z[dict.non_basic(i)] = dict.z[i+1];
+			}
+		}
+		if(crash) {
+			crash(trace_flag);
+			if(is_feasible()) {
+				return true;
+			}
+		}
+		if(trace_flag) {
+			StdOut.println("\nInitialization phase ... ");
+		}
+		switch(phase1) {
+			case PHASE1_AUXILIARY:
+				return auxiliary_phase1(primal_z);
+			case PHASE1_BIG_M:
+				return big_m_phase1(primal_z);
+			default:
+				return dual_phase1(primal_z);
+		}
+	}
+	
+	public boolean is_feasible() {
 		for(int i = 0; i < dict.m; i++) {
 			if(dict.b(i) < 0) {
-				is_needed = true;
-				break;
+				return false;
 			}
 		}
-		if(!is_needed) {
-			return true;
+		return true;
+	}
+	
+	public boolean dual_phase1(double[] primal_z) {
+		//change objective in order to proceed with initialization
+		for(int i = 1; i <= dict.n; i++) {
+			dict.z[i] = -1.0;
 		}
+		DualSimplex dual = new DualSimplex(dict);
 		try {
-			if(trace_flag) {
-				StdOut.println("\nInitialization phase ... ");
-			}
-			//copy an initial objective in order to restore it later on
-			double[] primal_z = new double[dict.n + 1];
-			for(int i = 0; i <= dict.n; i++) {
-				primal_z[i] = dict.z[i];
+			dual.solve(false);
+		} catch (ArithmeticException e) {
+			//dual unbounded, i.e. primal infeasible
+			return false;
+		} finally {
+			phase1_iter = dual.iter;
+		}
+		//restore an objective
+		this.dict.set_objective(primal_z);
+		return true;
+	}
+	
+	public boolean auxiliary_phase1(double[] primal_z) {
+		dict.z = new double[dict.n+1];
+		dict.add_artificial(-1.0);
+		enter_artificial();
+		solve(false);
+		phase1_iter = iter + 1;
+		if(artificial_value() > Dictionary.tol) {
+			return false;
+		}
+		dict.remove_artificial();
+		dict.set_objective(primal_z);
+		return true;
+	}
+	
+	//single pass over composite objective, phase 2 only has to finish after x0 is dropped
+	public boolean big_m_phase1(double[] primal_z) {
+		double c_max = 1;
+		for(int i = 1; i <= dict.n; i++) {
+			c_max = Math.max(c_max, Math.abs(dict.z[i]));
+		}
+		dict.add_artificial(-BIG_M*c_max);
+		enter_artificial();
+		try {
+			solve(false);
+			phase1_iter = iter + 1;
+		} catch (ArithmeticException e) {
+			//a ray of the composite objective tells nothing about feasibility,
+			//so it is decided by the auxiliary problem from here and phase 2 looks for the ray again
+			phase1_iter = iter + 1;
+			if(artificial_value() > Dictionary.tol) {
+				set_auxiliary_objective();
+				solve(false);
+				phase1_iter += iter;
+				if(artificial_value() > Dictionary.tol) {
+					return false;
+				}
 			}
-			//change objective in order to proceed with initialization
-			for(int i = 1; i <= dict.n; i++) {
-				dict.z[i] = -1.0;
+			dict.remove_artificial();
+			dict.set_objective(primal_z);
+			return true;
+		}
+		if(artificial_value() > Dictionary.tol) {
+			return false;
+		}
+		dict.remove_artificial();
+		return true;
+	}
+	
+	//objective max -x0 of the auxiliary problem, with x0 basic
+	private void set_auxiliary_objective() {
+		int row = dict.basic.indexOf(0);
+		dict.z = new double[dict.n+1];
+		dict.z[0] = -dict.b(row);
+		for(int j = 0; j < dict.n; j++) {
+			dict.z[j+1] = -dict.A(row, j);
+		}
+	}
+	
+	//x0 enters replacing the most infeasible basic var, which makes the dictionary feasible
+	private void enter_artificial() {
+		int leave_id = 0;
+		for(int i = 1; i < dict.m; i++) {
+			if(dict.b(i) < dict.b(leave_id)) {
+				leave_id = i;
 			}
-			//set the dual view of dictionary
-			this.dict.set_dual_view();
-			solve(false);
-			//set back the primal view of dictionary
-			this.dict.set_primal_view();
-			//restore an objective
-			this.dict.z = new double[this.dict.n+1];
-			for(int i  = 0; i < this.dict.n; i++) {
-				int non_basic_id = this.dict.non_basic(i);
-				if(non_basic_id <= this.dict.n) {
-					this.dict.z[i+1] = primal_z[non_basic_id];
+		}
+		dict.primal_pivot(dict.n-1, leave_id);
+	}
+	
+	private double artificial_value() {
+		int row = dict.basic.indexOf(0);
+		return row == -1 ? 0 : dict.b(row);
+	}
+	
+	//pivots decision vars into rows of infeasible slacks, preferring columns with the fewest nonzeros
+	//in the rows not crashed yet (so that the crashed basis stays close to triangular)
+	//and only if the total infeasibility decreases
+	public void crash(boolean trace_flag) {
+		int m = dict.m, n = dict.n;
+		boolean[] row_used = new boolean[m];
+		boolean[] col_used = new boolean[n];
+		while(true) {
+			//most infeasible row not crashed yet
+			int r = -1;
+			for(int i = 0; i < m; i++) {
+				if(!row_used[i] && dict.b(i) < -Dictionary.tol && (r == -1 || dict.b(i) < dict.b(r))) {
+					r = i;
 				}
 			}
-			for(int i = 0; i < this.dict.m; i++) {
-				int id = this.dict.basic(i);
-				if(id <= this.dict.n) {
-					this.dict.z[0] += primal_z[id]*this.dict.b(i);
-					for(int j = 1; j <= this.dict.n; j++) {
-						this.dict.z[j] += primal_z[id]*this.dict.A(i, j-1);
+			if(r == -1) {
+				break;
+			}
+			row_used[r] = true;
+			double inf = infeasibility(-1, r);
+			int col = -1, col_count = 0;
+			double col_inf = inf;
+			for(int j = 0; j < n; j++) {
+				if(col_used[j] || dict.non_basic(j) > dict.n || dict.A(r, j) <= Dictionary.tol) {
+					continue;
+				}
+				double new_inf = infeasibility(j, r);
+				if(new_inf >= inf - Dictionary.tol) {
+					continue;
+				}
+				//counted on the current (pivoted) values
+				int count = 0;
+				for(int i = 0; i < m; i++) {
+					if(!row_used[i] && Math.abs(dict.A(i, j)) > Dictionary.tol) {
+						count++;
 					}
 				}
-			}				
-		} catch (ArithmeticException e) {
-			return false;
-		} 
-		return true;
+				if(col == -1 || count < col_count || (count == col_count && new_inf < col_inf)) {
+					col = j;
+					col_count = count;
+					col_inf = new_inf;
+				}
+			}
+			if(col == -1) {
+				continue;
+			}
+			col_used[col] = true;
+			crash_iter++;
+			enter_var = dict.non_basic(col);
+			leave_var = dict.basic(r);
+			dict.primal_pivot(col, r);
+			if(trace_flag) {
+				StdOut.println("\nCrash pivot " + crash_iter + ": entering var " + enter_var + ", leaving var " + leave_var);
+			}
+		}
+	}
+	
+	//sum of negative b entries after pivoting column col into row r (current one if col == -1)
+	private double infeasibility(int col, int r) {
+		double b_r = col == -1 ? dict.b(r) : -dict.b(r)/dict.A(r, col);
+		double inf = Math.max(0, -b_r);
+		for(int i = 0; i < dict.m; i++) {
+			if(i != r) {
+				double b_i = col == -1 ? dict.b(i) : dict.b(i) + dict.A(i, col)*b_r;
+				inf += Math.max(0, -b_i);
+			}
+		}
+		return inf;
 	}
 	
 	public void solve(boolean trace_flag) {
 		iter = 0;
+		dict.reset();
 		if(trace_flag) {
 			StdOut.println("\nOptimization phase ... ");
 		}
 		while(true) {
-			int enter_id = dict.get_entering();
+			int enter_id = dict.primal_entering();
 			if(dict.is_final) {
 				solution = dict.primal_solution();
 				if(trace_flag) {
@@ -84,14 +282,14 @@ class Simplex {
 				}
 				break;
 			}
-			int leave_id = dict.get_leaving(enter_id);
+			int leave_id = dict.primal_leaving(enter_id);
 			if(dict.is_unbounded) {
 				throw new ArithmeticException("Linear program is UNBOUNDED!");
 			}
 			iter++;
 			enter_var = dict.non_basic(enter_id); //cache entering and leaving vars before it would be changed by pivot() 
 			leave_var = dict.basic(leave_id);	   			
-			dict.pivot(enter_id, leave_id);
+			dict.primal_pivot(enter_id, leave_id);
 			if(trace_flag) {
 				print_trace_info();
 			}
@@ -99,6 +297,11 @@ class Simplex {
 	}
 	
 	public void print_trace_info() {
+		print_trace_info(dict, iter, enter_var, leave_var);
+	}
+	
+	//shared with DualSimplex, which pivots the same dictionaries
+	static void print_trace_info(Dictionary dict, int iter, int enter_var, int leave_var) {
 		StdOut.println("\nIteration " + iter + ":\n");
 		StdOut.println(" - Entering var: " + enter_var);  
 		StdOut.println(" - Leaving var: " + leave_var);
@@ -107,6 +310,14 @@ class Simplex {
 	
 	public void print_solution() {
 		StdOut.println("\nOptimal solution obtained after " + iter + " simplex iterations" + ":\n");
+		if(crash_iter + phase1_iter > 0) {
+			StdOut.println("(crash: " + crash_iter + ", phase 1: " + phase1_iter + ", phase 2: " + iter + ")\n");
+		}
+		print_values(dict, solution);
+	}
+	
+	//vars and objective value of an optimal dictionary, shared with DualSimplex
+	static void print_values(Dictionary dict, double[] solution) {
 		for(int i = 0; i < dict.n; i++) {
 			StdOut.println(String.format(java.util.Locale.UK, "var " + (i+1) + ": %.4f", solution[i]));
 		}
@@ -120,10 +331,18 @@ class Simplex {
 	public static void main(String[] args) throws IOException {
 		Stopwatch sw = new Stopwatch();
 		boolean trace_flag = false;
-		if("-t".equals(args[1])) {
-			trace_flag = Boolean.parseBoolean(args[2]);
+		boolean crash = false;
+		int phase1 = PHASE1_DUAL;
+		for(int i = 1; i+1 < args.length; i += 2) {
+			if("-t".equals(args[i])) {
+				trace_flag = Boolean.parseBoolean(args[i+1]);
+			} else if("-c".equals(args[i])) {
+				crash = Boolean.parseBoolean(args[i+1]);
+			} else if("-p".equals(args[i])) {
+				phase1 = "aux".equals(args[i+1]) ? PHASE1_AUXILIARY : "bigm".equals(args[i+1]) ? PHASE1_BIG_M : PHASE1_DUAL;
+			}
 		}
-		Simplex solver = new Simplex(new Dictionary(args[0]), trace_flag);
+		Simplex solver = new Simplex(new Dictionary(args[0]), trace_flag, crash, phase1);
 		StdOut.println("\nTiming results: " + sw.elapsedTime());
 	}
 }
\ No newline at end of file
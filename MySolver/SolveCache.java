@@ -0,0 +1,561 @@
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*********************************************************************************
+ *  content-addressed cache of solutions, keyed by a hash of the model in normal form
+ *
+ *  rows and columns of a dictionary in its initial (slack) form are sorted by
+ *  permutation invariant classes, so that a model resubmitted with rows and/or
+ *  columns permuted maps to the same key: starting from b and c, each row is
+ *  re-classed by the sorted (class, entry) pairs of its nonzero columns and
+ *  each column likewise until the partition stops changing; ties left, as in
+ *  symmetric 0/1 models, are broken by taking the first row or column of the
+ *  first tied class out of it and refining again, at most MAX_SPLITS times,
+ *  and only then by input order
+ *
+ *  two keys are computed: the full one over (m, n, A, b, c) for exact hits and
+ *  the structural one over (m, n, A) for handing over an optimal basis as a
+ *  warm start when only rhs or costs differ; the latter is classed by the
+ *  entries of A alone, so that b and c can not change it
+ *
+ *  usage:       java SolveCache [filename ...]
+ *
+ *  prints the keys of the given dictionaries, without files it checks that
+ *  random 0/1 set packing models keep their keys under permutations
+ *
+ *  entries live in an LRU bounded by size in bytes and, optionally, in files
+ *  of a directory, named by the full key
+ *********************************************************************************/
+
+class SolveCache {
+	
+	public static final int MAX_BASES = 1024;    //structural keys remembered for warm starts
+	public static final int MAX_SPLITS = 256;    //ties broken by refinement, the rest keep input order
+	
+	//solution in canonical order, var ids of the basis in canonical numbering
+	public static class Entry {
+		public double obj;
+		public double[] x;
+		public int[] basis;
+		public String error;
+	
+		public long size() {
+			return 96 + 8L*(x == null ? 0 : x.length) + 4L*(basis == null ? 0 : basis.length) + 2L*(error == null ? 0 : error.length());
+		}
+	}
+	
+	//model keys together with the permutations bringing it to the normal form
+	public static class Model {
+		public String key;
+		public String structure;
+		public int m;
+		public int n;
+		public int[] row_order;    //row_order[k] = original row placed at position k
+		public int[] col_order;
+		public int[] structure_row_order;    //same for the structural key
+		public int[] structure_col_order;
+	}
+	
+	private long max_bytes;
+	private long bytes;
+	private File dir;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private LinkedHashMap<String, int[]> bases = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			return size() > MAX_BASES;
+		}
+	};
+	public int hits, misses, warm_starts;
+	
+	//dir may be null for memory only cache
+	public SolveCache(long max_bytes, File dir) {
+		this.max_bytes = max_bytes;
+		this.dir = dir;
+		if(dir != null) {
+			dir.mkdirs();
+		}
+	}
+	
+	public Model model(String solver, Dictionary dict) {
+		Model model = new Model();
+		model.m = dict.m;
+		model.n = dict.n;
+		int[][] order = normal_form(dict, true);
+		model.row_order = order[0];
+		model.col_order = order[1];
+		order = normal_form(dict, false);
+		model.structure_row_order = order[0];
+		model.structure_col_order = order[1];
+		MessageDigest md = digest();
+		md.update(solver.getBytes());
+		update(md, dict.m);
+		update(md, dict.n);
+		for(int i : model.structure_row_order) {
+			for(int j : model.structure_col_order) {
+				update(md, dict.A(i, j));
+			}
+		}
+		model.structure = hex(md.digest());
+		md.update(solver.getBytes());
+		update(md, dict.m);
+		update(md, dict.n);
+		for(int i : model.row_order) {
+			for(int j : model.col_order) {
+				update(md, dict.A(i, j));
+			}
+		}
+		for(int i : model.row_order) {
+			update(md, dict.b(i));
+		}
+		update(md, dict.z[0]);
+		for(int j : model.col_order) {
+			update(md, dict.z[j+1]);
+		}
+		model.key = hex(md.digest());
+		return model;
+	}
+	
+	//stored solution mapped to the numbering of the given model, null on miss
+	public synchronized Entry get(Model model) {
+		Entry entry = entries.get(model.key);
+		if(entry == null && dir != null) {
+			entry = read(new File(dir, model.key));
+			if(entry != null) {
+				insert(model.key, entry);
+			}
+		}
+		if(entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		Entry result = new Entry();
+		result.obj = entry.obj;
+		result.error = entry.error;
+		if(entry.x != null) {
+			result.x = new double[entry.x.length];
+			for(int k = 0; k < model.n && k < entry.x.length; k++) {
+				result.x[model.col_order[k]] = entry.x[k];
+			}
+		}
+		result.basis = entry.basis == null ? null : from_canonical(model.row_order, model.col_order, model.n, entry.basis);
+		return result;
+	}
+	
+	//optimal basis of a model with the same structure, null if none is known
+	public synchronized int[] warm_basis(Model model) {
+		int[] basis = bases.get(model.structure);
+		if(basis == null) {
+			return null;
+		}
+		warm_starts++;
+		return from_canonical(model.structure_row_order, model.structure_col_order, model.n, basis);
+	}
+	
+	//x and basis are given in the numbering of the model
+	public synchronized void put(Model model, double obj, double[] x, int[] basis, String error) {
+		Entry entry = new Entry();
+		entry.obj = obj;
+		entry.error = error;
+		if(x != null) {
+			entry.x = new double[x.length];
+			for(int k = 0; k < model.n && k < x.length; k++) {
+				entry.x[k] = x[model.col_order[k]];
+			}
+		}
+		if(basis != null) {
+			entry.basis = to_canonical(model.row_order, model.col_order, model.n, basis);
+			bases.put(model.structure, to_canonical(model.structure_row_order, model.structure_col_order, model.n, basis));
+		}
+		insert(model.key, entry);
+		if(dir != null) {
+			write(new File(dir, model.key), entry);
+		}
+	}
+	
+	private void insert(String key, Entry entry) {
+		Entry old = entries.put(key, entry);
+		if(old != null) {
+			bytes -= old.size();
+		}
+		bytes += entry.size();
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while(bytes > max_bytes && it.hasNext()) {
+			Map.Entry<String, Entry> eldest = it.next();
+			if(eldest.getValue() == entry) {
+				break;
+			}
+			bytes -= eldest.getValue().size();
+			it.remove();
+		}
+	}
+	
+	//decision var j+1 -> canonical column position + 1, slack n+i+1 -> n + canonical row position + 1
+	private static int[] to_canonical(int[] row_order, int[] col_order, int n, int[] basis) {
+		int[] col_pos = inverse(col_order);
+		int[] row_pos = inverse(row_order);
+		int[] result = new int[basis.length];
+		for(int k = 0; k < basis.length; k++) {
+			int id = basis[k];
+			result[k] = id <= n ? col_pos[id-1] + 1 : n + row_pos[id-n-1] + 1;
+		}
+		return result;
+	}
+	
+	private static int[] from_canonical(int[] row_order, int[] col_order, int n, int[] basis) {
+		int[] result = new int[basis.length];
+		for(int k = 0; k < basis.length; k++) {
+			int id = basis[k];
+			result[k] = id <= n ? col_order[id-1] + 1 : n + row_order[id-n-1] + 1;
+		}
+		return result;
+	}
+	
+	private static int[] inverse(int[] order) {
+		int[] pos = new int[order.length];
+		for(int k = 0; k < order.length; k++) {
+			pos[order[k]] = k;
+		}
+		return pos;
+	}
+	
+	//row and column orders of the normal form, classes start from b and c if with_rhs
+	private static int[][] normal_form(Dictionary dict, boolean with_rhs) {
+		int m = dict.m, n = dict.n;
+		int[][] rows = new int[m][];
+		int[][] cols = new int[n][];
+		int[] count = new int[n];
+		for(int i = 0; i < m; i++) {
+			int nnz = 0;
+			for(int j = 0; j < n; j++) {
+				if(dict.A(i, j) != 0) {
+					nnz++;
+					count[j]++;
+				}
+			}
+			rows[i] = new int[nnz];
+			nnz = 0;
+			for(int j = 0; j < n; j++) {
+				if(dict.A(i, j) != 0) {
+					rows[i][nnz++] = j;
+				}
+			}
+		}
+		for(int j = 0; j < n; j++) {
+			cols[j] = new int[count[j]];
+			count[j] = 0;
+		}
+		for(int i = 0; i < m; i++) {
+			for(int j : rows[i]) {
+				cols[j][count[j]++] = i;
+			}
+		}
+		double[][] row_sig = new double[m][1];
+		double[][] col_sig = new double[n][1];
+		for(int i = 0; i < m; i++) {
+			row_sig[i][0] = with_rhs ? normalize(dict.b(i)) : 0.0;
+		}
+		for(int j = 0; j < n; j++) {
+			col_sig[j][0] = with_rhs ? normalize(dict.z[j+1]) : 0.0;
+		}
+		int[] row_class = new int[m];
+		int[] col_class = new int[n];
+		rank(row_sig, row_class);
+		rank(col_sig, col_class);
+		refine(dict, rows, cols, row_class, col_class);
+		for(int split = 0; split < MAX_SPLITS; split++) {
+			int[] cls = row_class;
+			int k = first_tied(row_class);
+			if(k == -1) {
+				cls = col_class;
+				k = first_tied(col_class);
+			}
+			if(k == -1) {
+				break;
+			}
+			//k goes just before the rest of its class
+			for(int l = 0; l < cls.length; l++) {
+				cls[l] = 2*cls[l] + (l == k ? 0 : 1);
+			}
+			refine(dict, rows, cols, row_class, col_class);
+		}
+		return new int[][] {order(row_class), order(col_class)};
+	}
+	
+	//re-classes rows by the (class, entry) pairs of their nonzeros and columns likewise, until no class splits
+	private static void refine(Dictionary dict, int[][] rows, int[][] cols, int[] row_class, int[] col_class) {
+		int m = rows.length, n = cols.length;
+		int classes = -1;
+		while(true) {
+			double[][] row_sig = new double[m][];
+			double[][] col_sig = new double[n][];
+			for(int i = 0; i < m; i++) {
+				double[][] pairs = new double[rows[i].length][];
+				for(int k = 0; k < pairs.length; k++) {
+					int j = rows[i][k];
+					pairs[k] = new double[] {col_class[j], normalize(dict.A(i, j))};
+				}
+				row_sig[i] = signature(row_class[i], pairs);
+			}
+			for(int j = 0; j < n; j++) {
+				double[][] pairs = new double[cols[j].length][];
+				for(int k = 0; k < pairs.length; k++) {
+					int i = cols[j][k];
+					pairs[k] = new double[] {row_class[i], normalize(dict.A(i, j))};
+				}
+				col_sig[j] = signature(col_class[j], pairs);
+			}
+			int count = rank(row_sig, row_class) + rank(col_sig, col_class);
+			if(count == classes) {
+				return;
+			}
+			classes = count;
+		}
+	}
+	
+	//own class followed by the sorted pairs
+	private static double[] signature(int cls, double[][] pairs) {
+		Arrays.sort(pairs, new Comparator<double[]>() {
+			public int compare(double[] a, double[] b) {
+				return Arrays.compare(a, b);
+			}
+		});
+		double[] sig = new double[1 + 2*pairs.length];
+		sig[0] = cls;
+		for(int k = 0; k < pairs.length; k++) {
+			sig[2*k+1] = pairs[k][0];
+			sig[2*k+2] = pairs[k][1];
+		}
+		return sig;
+	}
+	
+	//numbers the distinct signatures in their sorted order, returns their count
+	private static int rank(final double[][] sig, int[] cls) {
+		Integer[] order = new Integer[sig.length];
+		for(int k = 0; k < order.length; k++) {
+			order[k] = k;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Arrays.compare(sig[a], sig[b]);
+			}
+		});
+		int count = 0;
+		for(int k = 0; k < order.length; k++) {
+			if(k == 0 || Arrays.compare(sig[order[k-1]], sig[order[k]]) != 0) {
+				count++;
+			}
+			cls[order[k]] = count-1;
+		}
+		return count;
+	}
+	
+	//first member of the smallest class with more than one member, -1 if all classes are single
+	private static int first_tied(int[] cls) {
+		int[] size = new int[cls.length];
+		for(int c : cls) {
+			size[c]++;
+		}
+		for(int c = 0; c < size.length; c++) {
+			if(size[c] > 1) {
+				for(int k = 0; k < cls.length; k++) {
+					if(cls[k] == c) {
+						return k;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+	
+	//sorted by class, then by input position
+	private static int[] order(final int[] cls) {
+		Integer[] order = new Integer[cls.length];
+		for(int k = 0; k < order.length; k++) {
+			order[k] = k;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return cls[a] != cls[b] ? Integer.compare(cls[a], cls[b]) : Integer.compare(a, b);
+			}
+		});
+		int[] result = new int[cls.length];
+		for(int k = 0; k < cls.length; k++) {
+			result[k] = order[k];
+		}
+		return result;
+	}
+	
+	private static double normalize(double a) {
+		return a == 0 ? 0.0 : a;
+	}
+	
+	private static void update(MessageDigest md, double a) {
+		long bits = Double.doubleToLongBits(normalize(a));
+		for(int k = 0; k < 8; k++) {
+			md.update((byte) (bits >>> 8*k));
+		}
+	}
+	
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static String hex(byte[] bytes) {
+		StringBuilder s = new StringBuilder();
+		for(byte b : bytes) {
+			s.append(String.format("%02x", b));
+		}
+		return s.toString();
+	}
+	
+	/*
+	 *  file format:
+	 *
+	 *  obj            [or ERROR message]
+	 *  x1 ..... xn
+	 *  B1 ..... Bm    [empty line if no basis is known]
+	 */
+	private static Entry read(File file) {
+		if(!file.exists()) {
+			return null;
+		}
+		try(BufferedReader input = new BufferedReader(new FileReader(file))) {
+			Entry entry = new Entry();
+			String line = input.readLine();
+			if(line.startsWith("ERROR ")) {
+				entry.error = line.substring(6);
+				return entry;
+			}
+			entry.obj = Double.parseDouble(line);
+			String[] tokens = input.readLine().trim().split("\\s+");
+			entry.x = new double[tokens[0].isEmpty() ? 0 : tokens.length];
+			for(int k = 0; k < entry.x.length; k++) {
+				entry.x[k] = Double.parseDouble(tokens[k]);
+			}
+			line = input.readLine();
+			if(line != null && !line.trim().isEmpty()) {
+				tokens = line.trim().split("\\s+");
+				entry.basis = new int[tokens.length];
+				for(int k = 0; k < tokens.length; k++) {
+					entry.basis[k] = Integer.parseInt(tokens[k]);
+				}
+			}
+			return entry;
+		} catch (IOException | RuntimeException e) {
+			//unreadable entry is treated as a miss
+			return null;
+		}
+	}
+	
+	private static void write(File file, Entry entry) {
+		File temp = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+		try(PrintWriter output = new PrintWriter(new FileWriter(temp))) {
+			if(entry.error != null) {
+				output.println("ERROR " + entry.error);
+			} else {
+				output.println(Double.toString(entry.obj));
+				StringBuilder s = new StringBuilder();
+				for(double a : entry.x) {
+					s.append(a).append(' ');
+				}
+				output.println(s.toString().trim());
+				s = new StringBuilder();
+				if(entry.basis != null) {
+					for(int id : entry.basis) {
+						s.append(id).append(' ');
+					}
+				}
+				output.println(s.toString().trim());
+			}
+		} catch (IOException e) {
+			return;
+		}
+		temp.renameTo(file);
+	}
+	
+	public static void main(String[] args) throws IOException {
+		SolveCache cache = new SolveCache(0, null);
+		if(args.length > 0) {
+			for(String file : args) {
+				Model model = cache.model("", new Dictionary(file));
+				StdOut.println(file + ": " + model.key + " " + model.structure);
+			}
+			return;
+		}
+		Random random = new Random(1);
+		int trials = 1000, failed = 0;
+		for(int t = 0; t < trials; t++) {
+			int m = 4 + random.nextInt(9), n = 4 + random.nextInt(9);
+			double[][] a = new double[m][n];
+			double[] c = new double[n];
+			for(int i = 0; i < m; i++) {
+				for(int j = 0; j < n; j++) {
+					a[i][j] = random.nextInt(3) == 0 ? 1 : 0;
+				}
+			}
+			for(int j = 0; j < n; j++) {
+				//unit costs for every other model, the most symmetric case
+				c[j] = t % 2 == 0 ? 1 : 1 + random.nextInt(3);
+			}
+			Model model = cache.model("", set_packing(a, c, permutation(m, null), permutation(n, null)));
+			Model permuted = cache.model("", set_packing(a, c, permutation(m, random), permutation(n, random)));
+			if(!model.key.equals(permuted.key) || !model.structure.equals(permuted.structure)) {
+				failed++;
+			}
+		}
+		StdOut.println("permuted 0/1 set packing models with other keys: " + failed + " of " + trials);
+	}
+	
+	//identity if random is null
+	private static int[] permutation(int count, Random random) {
+		int[] p = new int[count];
+		for(int k = 0; k < count; k++) {
+			p[k] = k;
+		}
+		for(int k = count-1; random != null && k > 0; k--) {
+			int l = random.nextInt(k+1);
+			int temp = p[k];
+			p[k] = p[l];
+			p[l] = temp;
+		}
+		return p;
+	}
+	
+	//max c*x subject to a*x <= 1 with row p[k] placed at k and column q[l] at l
+	private static Dictionary set_packing(double[][] a, double[] c, int[] p, int[] q) throws IOException {
+		int m = p.length, n = q.length;
+		StringBuilder s = new StringBuilder();
+		s.append(m).append(' ').append(n).append('\n');
+		for(int k = 0; k < m; k++) {
+			s.append(n+k+1).append(' ');
+		}
+		s.append('\n');
+		for(int l = 0; l < n; l++) {
+			s.append(l+1).append(' ');
+		}
+		s.append('\n');
+		for(int k = 0; k < m; k++) {
+			s.append("1.0 ");
+		}
+		s.append('\n');
+		for(int k = 0; k < m; k++) {
+			for(int l = 0; l < n; l++) {
+				s.append(-a[p[k]][q[l]]).append(' ');
+			}
+			s.append('\n');
+		}
+		s.append("0.0");
+		for(int l = 0; l < n; l++) {
+			s.append(' ').append(c[q[l]]);
+		}
+		s.append('\n');
+		return new Dictionary(new BufferedReader(new StringReader(s.toString())));
+	}
+}
@@ -0,0 +1,361 @@
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/*********************************************************************************
+ *  resident server solving LPs and ILPs on request, so that JVM startup and JIT
+ *  warm-up are paid once instead of per solve
+ *
+ *  compilation: javac SolverServer.java
+ *
+ *  usage:       java SolverServer -stdin
+ *               java SolverServer -port port_number   [loopback only]
+ *               java SolverServer -unix socket_path
+ *               optional: -solvers pool_size -queue queue_size
+ *                         -cache max_bytes [-cache-dir directory]
+ *                         -root directory   [dictionary paths are resolved in it and may not leave it]
+ *
+ *  -unix removes a socket file left at socket_path by a server that is gone,
+ *  but refuses to start if anything else is there
+ *
+ *  request (one line, followed by the dictionary itself if path is '-'):
+ *
+ *  solver path
+ *
+ *  solver is one of: simplex | ilp | ipm | ipm-hsd | ipm-cg | ipm-mixed
+ *  path is a dictionary file or '-' for a dictionary sent inline (m+5 lines);
+ *  an inline dictionary that can not be read closes the connection
+ *
+ *  response (one line):
+ *
+ *  OK z x1 x2 ..... xn [BASIS B1 B2 ..... Bm]
+ *  ERROR message
+ *
+ *  BASIS lists the ids of the optimal basic vars (as in the dictionary file),
+ *  given by the simplex solver, also on cache hits
+ *
+ *  'quit' closes the connection
+ *********************************************************************************/
+
+class SolverServer {
+	
+	public static final int WARMUP_ROUNDS = 200;
+	public static final int QUEUE_SIZE    = 64;
+	public static final String[] SOLVERS  = {"simplex", "ilp", "ipm", "ipm-hsd", "ipm-cg", "ipm-mixed"};
+	
+	private ExecutorService solve_pool;
+	private ExecutorService connections;
+	private SolveCache cache;
+	private File root;
+	
+	public SolverServer(int solvers, int queue) {
+		this(solvers, queue, null, null);
+	}
+	
+	public SolverServer(int solvers, int queue, SolveCache cache) {
+		this(solvers, queue, cache, null);
+	}
+	
+	//cache and root may be null
+	public SolverServer(int solvers, int queue, SolveCache cache, File root) {
+		this.cache = cache;
+		this.root = root;
+		solve_pool = new ThreadPoolExecutor(solvers, solvers, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue));
+		connections = connection_executor();
+	}
+	
+	//virtual thread per connection when the runtime has them, cached platform threads otherwise
+	private static ExecutorService connection_executor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	public void serve(ServerSocketChannel server) throws IOException {
+		while(true) {
+			final SocketChannel channel = server.accept();
+			connections.execute(new Runnable() {
+				public void run() {
+					try(SocketChannel c = channel) {
+						handle(new BufferedReader(new InputStreamReader(Channels.newInputStream(c))),
+						       new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(c)), true));
+					} catch (IOException e) {
+						//connection dropped by the client
+					}
+				}
+			});
+		}
+	}
+	
+	public void handle(BufferedReader in, PrintWriter out) throws IOException {
+		String line;
+		while((line = in.readLine()) != null) {
+			line = line.trim();
+			if(line.isEmpty()) {
+				continue;
+			}
+			if(line.equals("quit")) {
+				break;
+			}
+			String[] tokens = line.split("\\s+");
+			if(tokens.length != 2) {
+				out.println("ERROR malformed request: " + line);
+				continue;
+			}
+			final String solver = tokens[0];
+			final Dictionary dict;
+			if(tokens[1].equals("-")) {
+				try {
+					dict = new Dictionary(in);
+				} catch (IOException | RuntimeException e) {
+					//the rest of the dictionary would be taken for requests
+					out.println("ERROR cannot read dictionary: " + message(e));
+					break;
+				}
+			} else {
+				try {
+					dict = new Dictionary(path(tokens[1]));
+				} catch (IOException | RuntimeException e) {
+					//no parser messages, they would echo lines of any file the server can read
+					out.println("ERROR cannot read dictionary " + tokens[1]);
+					continue;
+				}
+			}
+			String response;
+			try {
+				response = solve_pool.submit(new Callable<String>() {
+					public String call() {
+						return cached_solve(solver, dict);
+					}
+				}).get();
+			} catch (RejectedExecutionException e) {
+				response = "ERROR server busy";
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				response = "ERROR " + message(e.getCause());
+			}
+			out.println(response);
+		}
+	}
+	
+	//path of a dictionary file, which has to be inside root if one is set
+	private String path(String name) throws IOException {
+		if(root == null) {
+			return name;
+		}
+		File file = new File(root, name).getCanonicalFile();
+		if(!file.toPath().startsWith(root.getCanonicalFile().toPath())) {
+			throw new IOException("outside of the root directory: " + name);
+		}
+		return file.getPath();
+	}
+	
+	public static String solve(String solver, Dictionary dict) {
+		return format(run(solver, dict, null));
+	}
+	
+	//looks the model up in the cache first, simplex misses get a warm start from a model of the same structure
+	public String cached_solve(String solver, Dictionary dict) {
+		if(cache == null || !is_solver(solver)) {
+			return solve(solver, dict);
+		}
+		SolveCache.Model model = cache.model(solver, dict);
+		SolveCache.Entry entry = cache.get(model);
+		if(entry == null) {
+			entry = run(solver, dict, solver.equals("simplex") ? cache.warm_basis(model) : null);
+			cache.put(model, entry.obj, entry.x, entry.basis, entry.error);
+		}
+		return format(entry);
+	}
+	
+	public static boolean is_solver(String solver) {
+		return java.util.Arrays.asList(SOLVERS).contains(solver);
+	}
+	
+	public static SolveCache.Entry run(String solver, Dictionary dict, int[] warm_basis) {
+		SolveCache.Entry entry = new SolveCache.Entry();
+		try {
+			switch(solver) {
+				case "simplex": {
+					Simplex simplex = warm_basis == null ? new Simplex(dict, false) : new Simplex(dict, false, warm_basis);
+					entry.obj = simplex.dict.z[0];
+					entry.x = simplex.solution;
+					entry.basis = new int[simplex.dict.m];
+					for(int i = 0; i < simplex.dict.m; i++) {
+						entry.basis[i] = simplex.dict.basic.get(i);
+					}
+					break;
+				}
+				case "ilp": {
+					ILPSolver ilp = new ILPSolver(dict, false);
+					entry.obj = ilp.get_objective();
+					entry.x = ilp.get_solution();
+					break;
+				}
+				case "ipm":
+				case "ipm-hsd":
+				case "ipm-cg":
+				case "ipm-mixed": {
+					InteriorPointLPSolver ipm = new InteriorPointLPSolver(dict, solver.equals("ipm-cg"), solver.equals("ipm-mixed"));
+					if(solver.equals("ipm-hsd")) {
+						ipm.solve_homogeneous(false);
+					} else {
+						ipm.solve(false);
+					}
+					if(ipm.is_infeasible()) {
+						entry.error = "Linear program is INFEASIBLE!";
+					} else if(ipm.is_unbounded()) {
+						entry.error = "Linear program is UNBOUNDED!";
+					} else if(!ipm.is_optimal()) {
+						entry.error = "Number of iterations exceeded the limit of " + InteriorPointLPSolver.MAXITS;
+					}
+					entry.obj = ipm.get_objective();
+					entry.x = ipm.get_solution();
+					break;
+				}
+				default:
+					entry.error = "unknown solver: " + solver;
+			}
+		} catch (ArithmeticException e) {
+			entry.error = message(e);
+		}
+		return entry;
+	}
+	
+	//class name for exceptions without a message, such as NullPointerException
+	private static String message(Throwable e) {
+		return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+	}
+	
+	public static String format(SolveCache.Entry entry) {
+		if(entry.error != null) {
+			return "ERROR " + entry.error;
+		}
+		StringBuilder s = new StringBuilder("OK");
+		s.append(String.format(java.util.Locale.UK, " %.10g", entry.obj));
+		for(int i = 0; i < entry.x.length; i++) {
+			s.append(String.format(java.util.Locale.UK, " %.10g", entry.x[i]));
+		}
+		if(entry.basis != null) {
+			s.append(" BASIS");
+			for(int id : entry.basis) {
+				s.append(" " + id);
+			}
+		}
+		return s.toString();
+	}
+	
+	//runs every solver on generated models, so that pivot and IPM loops get compiled before the first request
+	public static void warm_up() throws IOException {
+		Random random = new Random(2014);
+		for(int k = 0; k < WARMUP_ROUNDS; k++) {
+			for(String solver : SOLVERS) {
+				int size = solver.equals("ilp") ? 4 : 20;
+				String model = random_model(random, size, size);
+				solve(solver, new Dictionary(new BufferedReader(new StringReader(model))));
+			}
+		}
+	}
+	
+	//max c*x, Ax <= b, x >= 0 with positive data, feasible at the origin and bounded
+	public static String random_model(Random random, int m, int n) {
+		StringBuilder s = new StringBuilder();
+		s.append(m + " " + n + "\n");
+		for(int i = 0; i < m; i++) {
+			s.append((n+i+1) + " ");
+		}
+		s.append("\n");
+		for(int j = 0; j < n; j++) {
+			s.append((j+1) + " ");
+		}
+		s.append("\n");
+		for(int i = 0; i < m; i++) {
+			s.append((5 + random.nextInt(36)) + " ");
+		}
+		s.append("\n");
+		for(int i = 0; i < m; i++) {
+			for(int j = 0; j < n; j++) {
+				s.append(-(1 + random.nextInt(9)) + " ");
+			}
+			s.append("\n");
+		}
+		s.append("0 ");
+		for(int j = 0; j < n; j++) {
+			s.append((1 + random.nextInt(9)) + " ");
+		}
+		s.append("\n");
+		return s.toString();
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int solvers = Runtime.getRuntime().availableProcessors();
+		int queue = QUEUE_SIZE;
+		long cache_bytes = 0;
+		File cache_dir = null, root = null;
+		String mode = null, address = null;
+		for(int i = 0; i < args.length; i++) {
+			if("-stdin".equals(args[i])) {
+				mode = args[i];
+			} else if("-port".equals(args[i]) || "-unix".equals(args[i])) {
+				mode = args[i];
+				address = args[++i];
+			} else if("-solvers".equals(args[i])) {
+				solvers = Integer.parseInt(args[++i]);
+			} else if("-queue".equals(args[i])) {
+				queue = Integer.parseInt(args[++i]);
+			} else if("-cache".equals(args[i])) {
+				cache_bytes = Long.parseLong(args[++i]);
+			} else if("-cache-dir".equals(args[i])) {
+				cache_dir = new File(args[++i]);
+			} else if("-root".equals(args[i])) {
+				root = new File(args[++i]);
+			}
+		}
+		if(mode == null) {
+			throw new IllegalArgumentException("one of -stdin, -port, -unix has to be given");
+		}
+		Stopwatch sw = new Stopwatch();
+		warm_up();
+		System.err.println("Warm-up finished in " + sw.elapsedTime());
+		SolveCache cache = cache_bytes > 0 ? new SolveCache(cache_bytes, cache_dir) : null;
+		SolverServer server = new SolverServer(solvers, queue, cache, root);
+		if("-stdin".equals(mode)) {
+			server.handle(new BufferedReader(new InputStreamReader(System.in)), new PrintWriter(System.out, true));
+			System.exit(0);
+		}
+		ServerSocketChannel channel;
+		if("-port".equals(mode)) {
+			channel = ServerSocketChannel.open();
+			channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+		} else {
+			remove_stale_socket(Paths.get(address));
+			channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			channel.bind(UnixDomainSocketAddress.of(address));
+		}
+		server.serve(channel);
+	}
+	
+	//deletes a socket file nobody listens on, anything else at the path is left alone and reported
+	private static void remove_stale_socket(Path path) throws IOException {
+		if(!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			return;
+		}
+		int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+		if((mode & 0170000) != 0140000) {
+			throw new IOException(path + " exists and is not a socket");
+		}
+		try {
+			SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+			throw new IOException(path + " is in use by a running server");
+		} catch (ConnectException e) {
+			Files.delete(path);
+		}
+	}
+}